@@ -0,0 +1,208 @@
+/****************************************************************************
+ *  Compilation:  mvn -B package          (in week1/percolation/bench)
+ *  Execution:    java -jar target/benchmarks.jar [JMH options]
+ *  Dependencies: Percolation.java PercolationStats.java and the sources
+ *                they use, copied from ../src into this package by the build
+ *
+ *  JMH benchmarks to get a regression baseline for percolation:
+ *
+ *    - open throughput, opening every site of the grid in random order
+ *    - isFull latency on a grid at the percolation threshold
+ *    - time of a full trial, reusing one grid or allocating a new one
+ *    - cost of drawing a site with StdRandom, Random, ThreadLocalRandom
+ *      and SplittableRandom
+ *
+ *  for N in 64, 512 and 4096. Baseline results are in results/.
+ *
+ ****************************************************************************/
+
+package percolation;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PercolationBenchmark {
+
+    // a grid and a random order of its sites
+    @State(Scope.Thread)
+    public static class Grid {
+        @Param({"64", "512", "4096"})
+        public int N;
+
+        Percolation perc;
+        int[] order;              // site ids in random order
+        int next;                 // next site of the order to open
+        Random random;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            perc = new Percolation(N);
+            random = new Random(42);
+            order = shuffledSites(N, random);
+        }
+
+        @Setup(Level.Iteration)
+        public void restart() {
+            perc.reset();
+            next = 0;
+        }
+    }
+
+    // a grid opened up to its percolation threshold
+    @State(Scope.Thread)
+    public static class ThresholdGrid {
+        @Param({"64", "512", "4096"})
+        public int N;
+
+        Percolation perc;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            perc = new Percolation(N);
+            random = new Random(42);
+            int[] order = shuffledSites(N, random);
+            for (int k = 0; !perc.percolates(); k++) {
+                perc.open(order[k] / N + 1, order[k] % N + 1);
+            }
+        }
+    }
+
+    // the site ids of an N-by-N grid in random order
+    private static int[] shuffledSites(int N, Random random) {
+        int[] order = new int[N * N];
+        for (int s = 0; s < order.length; s++) {
+            int r = random.nextInt(s + 1);
+            order[s] = order[r];
+            order[r] = s;
+        }
+        return order;
+    }
+
+    /**
+     * opens the next site of a random order, starting over once all are open
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void open(Grid grid) {
+        if (grid.next == grid.order.length) {
+            grid.perc.reset();
+            grid.next = 0;
+        }
+        int site = grid.order[grid.next++];
+        grid.perc.open(site / grid.N + 1, site % grid.N + 1);
+    }
+
+    /**
+     * is a uniformly random site of a grid at the threshold full?
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean isFull(ThresholdGrid grid) {
+        return grid.perc.isFull(grid.random.nextInt(grid.N) + 1, grid.random.nextInt(grid.N) + 1);
+    }
+
+    /**
+     * one trial on a reused grid, sites drawn from a shuffled permutation
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int trialReused(Grid grid) {
+        grid.perc.reset();
+        return openUntilPercolates(grid.perc, grid.N, grid.order, grid.random);
+    }
+
+    /**
+     * one trial on a newly allocated grid, sites drawn from a shuffled permutation
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int trialAllocated(Grid grid) {
+        return openUntilPercolates(new Percolation(grid.N), grid.N, grid.order, grid.random);
+    }
+
+    /**
+     * one trial through PercolationStats, which allocates its grid and executor
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double trialStats(Grid grid) {
+        return new PercolationStats(grid.N, 1, grid.random.nextLong(), 1,
+                                    PercolationStats.Sampling.PERMUTATION).mean();
+    }
+
+    // incremental Fisher-Yates over the order, as PercolationStats does
+    private static int openUntilPercolates(Percolation perc, int N, int[] order, Random random) {
+        int opened = 0;
+        while (!perc.percolates()) {
+            int r = opened + random.nextInt(order.length - opened);
+            int site = order[r];
+            order[r] = order[opened];
+            order[opened] = site;
+            perc.open(site / N + 1, site % N + 1);
+            opened++;
+        }
+        return opened;
+    }
+
+    // random number generators drawing sites of a grid
+    @State(Scope.Thread)
+    public static class Generators {
+        @Param({"64", "512", "4096"})
+        public int N;
+
+        Random random = new Random(42);
+        SplittableRandom splittable = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int stdRandom(Generators g) {
+        return StdRandom.uniform(g.N * g.N);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int random(Generators g) {
+        return g.random.nextInt(g.N * g.N);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int threadLocalRandom(Generators g) {
+        return ThreadLocalRandom.current().nextInt(g.N * g.N);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int splittableRandom(Generators g) {
+        return g.splittable.nextInt(g.N * g.N);
+    }
+}
@@ -0,0 +1,16 @@
+package percolation;
+
+/**
+ * Stand-in for the algs4 StdOut, with the one method the percolation
+ * sources call.
+ */
+public final class StdOut {
+    private StdOut() { }
+
+    /**
+     * prints the object and a newline to standard output
+     */
+    public static void println(Object x) {
+        System.out.println(x);
+    }
+}
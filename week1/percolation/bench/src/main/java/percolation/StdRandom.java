@@ -0,0 +1,22 @@
+package percolation;
+
+import java.util.Random;
+
+/**
+ * Stand-in for the algs4 StdRandom, with the one method the percolation
+ * sources call. Like the original, it draws from a single
+ * java.util.Random seeded with the time.
+ */
+public final class StdRandom {
+    private static Random random = new Random(System.currentTimeMillis());
+
+    private StdRandom() { }
+
+    /**
+     * a uniformly random integer between 0 and N - 1
+     */
+    public static int uniform(int N) {
+        if (N <= 0) throw new IllegalArgumentException("Parameter N must be positive");
+        return random.nextInt(N);
+    }
+}
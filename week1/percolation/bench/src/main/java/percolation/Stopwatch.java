@@ -0,0 +1,15 @@
+package percolation;
+
+/**
+ * Stand-in for the algs4 Stopwatch: measures wall-clock time from its creation.
+ */
+public class Stopwatch {
+    private final long start = System.currentTimeMillis();
+
+    /**
+     * seconds since the stopwatch was created
+     */
+    public double elapsedTime() {
+        return (System.currentTimeMillis() - start) / 1000.0;
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * Percolation for very large grids. Open state is packed in a bitset and
+ * union find is a CompactUnionFind, with an int parent, a byte rank and a
+ * bottom bit, so a site costs a bit over 5 bytes. Sites have long ids, so
+ * N goes up to 65535, past the 46340 at which N * N overflows an int; a
+ * 50000-by-50000 grid takes about 13 GB.
+ */
+public class CompactPercolation implements PercolationModel {
+    private static final int MAX_SIZE = 65535;  // largest N with N * N + 1 sites in a CompactUnionFind
+
+    private int gridSize;                 // grid size
+    private long virtualTop;              // the virtual top, after the last site
+    private long[] open;                  // if site is open, sites in row-major order
+    private CompactUnionFind uf;          // components of open sites and the virtual top
+
+    /**
+     * Initializes a percolation grid with all sites blocked.
+     * @param N the grid size
+     */
+    public CompactPercolation(int N) {
+        this(N, 30);
+    }
+
+    // a grid whose union find is split in segments of 2^shift sites
+    CompactPercolation(int N, int shift) {
+        if (N <= 0 || N > MAX_SIZE) {
+            throw new IllegalArgumentException("Grid size should be between 1 and " + MAX_SIZE);
+        }
+        gridSize = N;
+        virtualTop = (long) N * N;
+        open = new long[(int) ((virtualTop + 63) >>> 6)];
+        uf = new CompactUnionFind(virtualTop + 1, shift);
+        for (long s = virtualTop - gridSize; s < virtualTop; s++) uf.setBottom(s);
+    }
+
+    /**
+     * blocks all sites again, so the grid can be reused without allocating
+     */
+    public void reset() {
+        uf.reset();
+        Arrays.fill(open, 0L);
+        for (long s = virtualTop - gridSize; s < virtualTop; s++) uf.setBottom(s);
+    }
+
+    /**
+     * validates the indices of the site
+     */
+    private void validateIndices(int i, int j) {
+        if (i <= 0 || i > gridSize || j <= 0 || j > gridSize) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+    }
+
+    // id of site (i, j), in row-major order
+    private long site(int i, int j) {
+        return (long) (i - 1) * gridSize + (j - 1);
+    }
+
+    /**
+     * open site (i, j) if not already open
+     */
+    public void open(int i, int j) {
+        validateIndices(i, j);
+        long site = site(i, j);
+        if (CompactUnionFind.get(open, site)) return;
+        CompactUnionFind.set(open, site);
+        if (i == 1) uf.union(site, virtualTop);
+        if (i > 1 && CompactUnionFind.get(open, site - gridSize)) uf.union(site, site - gridSize);
+        if (j < gridSize && CompactUnionFind.get(open, site + 1)) uf.union(site, site + 1);
+        if (i < gridSize && CompactUnionFind.get(open, site + gridSize)) uf.union(site, site + gridSize);
+        if (j > 1 && CompactUnionFind.get(open, site - 1)) uf.union(site, site - 1);
+    }
+
+    /**
+     * is site (i, j) open?
+     */
+    public boolean isOpen(int i, int j) {
+        validateIndices(i, j);
+        return CompactUnionFind.get(open, site(i, j));
+    }
+
+    /**
+     * is site (i, j) full?
+     */
+    public boolean isFull(int i, int j) {
+        validateIndices(i, j);
+        return uf.find(site(i, j)) == uf.find(virtualTop);
+    }
+
+    /**
+     * does the system percolate?
+     */
+    public boolean percolates() {
+        return uf.isBottom(virtualTop);
+    }
+
+    /**
+     * Unit test: a small grid, random grids checked against Percolation,
+     * then a 50000-by-50000 grid when the heap can hold it
+     */
+    public static void main(String[] args) {
+        CompactPercolation p = new CompactPercolation(3);
+        p.open(1, 2);
+        p.open(2, 2);
+        p.open(3, 1);
+        StdOut.println("isFull(2, 2): " + p.isFull(2, 2) + " should be true");
+        StdOut.println("isFull(3, 1): " + p.isFull(3, 1) + " should be false");
+        StdOut.println("percolates: " + p.percolates() + " should be false");
+        p.open(3, 2);
+        StdOut.println("isFull(3, 1): " + p.isFull(3, 1) + " should be true");
+        StdOut.println("percolates: " + p.percolates() + " should be true");
+        p.reset();
+        StdOut.println("isOpen(1, 2) after reset: " + p.isOpen(1, 2) + " should be false");
+
+        int mismatches = 0;
+        for (int t = 0; t < 100; t++) {
+            int N = 1 + StdRandom.uniform(20);
+            CompactPercolation compact = new CompactPercolation(N, 1 + StdRandom.uniform(4));
+            Percolation reference = new Percolation(N);
+            for (int k = 0; k < N * N; k++) {
+                int i = 1 + StdRandom.uniform(N);
+                int j = 1 + StdRandom.uniform(N);
+                compact.open(i, j);
+                reference.open(i, j);
+                if (compact.percolates() != reference.percolates()) mismatches++;
+                for (int a = 1; a <= N; a++) {
+                    for (int b = 1; b <= N; b++) {
+                        if (compact.isOpen(a, b) != reference.isOpen(a, b)) mismatches++;
+                        if (compact.isFull(a, b) != reference.isFull(a, b)) mismatches++;
+                    }
+                }
+            }
+        }
+        StdOut.println("mismatches with Percolation on 100 random grids: " + mismatches + " should be 0");
+
+        int big = 50000;
+        long needed = 13L << 30;
+        if (Runtime.getRuntime().maxMemory() < needed) {
+            StdOut.println("skipped the " + big + "-by-" + big + " grid: it needs -Xmx13g");
+            return;
+        }
+        CompactPercolation q = new CompactPercolation(big);
+        q.open(big, big);
+        StdOut.println("isOpen(" + big + ", " + big + "): " + q.isOpen(big, big) + " should be true");
+        StdOut.println("isFull(" + big + ", " + big + "): " + q.isFull(big, big) + " should be false");
+        for (int i = 1; i < big; i++) q.open(i, big);
+        StdOut.println("isFull(" + big + ", " + big + ") after opening its column: "
+                       + q.isFull(big, big) + " should be true");
+        StdOut.println("percolates: " + q.percolates() + " should be true");
+        StdOut.println("isFull(" + big + ", 1): " + q.isFull(big, 1) + " should be false");
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * Union find by rank for the bit-packed percolation grids, with an int
+ * parent link and a byte rank per element and a bottom flag per component,
+ * kept on its root in a bitset. Also has the bitset helpers the grids
+ * use for their open sites.
+ *
+ * Elements are long ids, up to 2^32 of them. The links and ranks are
+ * split into arrays of 2^30 elements, and a link is stored as the element
+ * xor its parent, an unsigned int that is 0 for a root. So a new or reset
+ * union find is all zeros and needs no pass to link each element to itself.
+ */
+class CompactUnionFind {
+    static final long MAX_ELEMENTS = 1L << 32;    // largest number of elements
+
+    private final int shift;              // log2 of the elements per segment
+    private final long mask;              // element index within its segment
+    private long[] bottom;                // if component rooted at element connected to bottom
+    private int[][] link;                 // element xor its parent, by segment
+    private byte[][] rank;                // ranks, at most log2 of the elements, by segment
+    private int[] firstLink;              // first segment of links, read directly on the fast path
+    private byte[] firstRank;             // first segment of ranks
+
+    /**
+     * Initializes n singleton components, none connected to the bottom.
+     * @param n number of elements
+     */
+    CompactUnionFind(long n) {
+        this(n, 30);
+    }
+
+    /**
+     * Initializes n singleton components, in segments of 2^shift elements.
+     * Small segments are only useful to test the segmented indexing.
+     */
+    CompactUnionFind(long n, int shift) {
+        if (n <= 0 || n > MAX_ELEMENTS) {
+            throw new IllegalArgumentException("Number of elements should be between 1 and " + MAX_ELEMENTS);
+        }
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        int segments = (int) ((n + mask) >>> shift);
+        bottom = new long[(int) ((n + 63) >>> 6)];
+        link = new int[segments][];
+        rank = new byte[segments][];
+        for (int k = 0; k < segments; k++) {
+            int size = (int) Math.min(n - ((long) k << shift), mask + 1);
+            link[k] = new int[size];
+            rank[k] = new byte[size];
+        }
+        firstLink = link[0];
+        firstRank = rank[0];
+    }
+
+    /**
+     * makes every element a singleton component again, none connected to the bottom
+     */
+    void reset() {
+        for (int[] segment : link) Arrays.fill(segment, 0);
+        for (byte[] segment : rank) Arrays.fill(segment, (byte) 0);
+        Arrays.fill(bottom, 0L);
+    }
+
+    // bit i of the bitset
+    static boolean get(long[] bits, long i) {
+        return (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    // sets bit i of the bitset
+    static void set(long[] bits, long i) {
+        bits[(int) (i >>> 6)] |= 1L << i;
+    }
+
+    // parent of element p
+    private long parent(long p) {
+        if (p <= mask) return p ^ (firstLink[(int) p] & 0xFFFFFFFFL);
+        return p ^ (link[(int) (p >>> shift)][(int) (p & mask)] & 0xFFFFFFFFL);
+    }
+
+    // links element p to its new parent
+    private void setParent(long p, long parent) {
+        if (p <= mask) firstLink[(int) p] = (int) (p ^ parent);
+        else           link[(int) (p >>> shift)][(int) (p & mask)] = (int) (p ^ parent);
+    }
+
+    private int rank(long p) {
+        if (p <= mask) return firstRank[(int) p];
+        return rank[(int) (p >>> shift)][(int) (p & mask)];
+    }
+
+    /**
+     * marks the component of singleton p as connected to the bottom
+     */
+    void setBottom(long p) {
+        set(bottom, p);
+    }
+
+    /**
+     * is the component of p connected to the bottom?
+     */
+    boolean isBottom(long p) {
+        return get(bottom, find(p));
+    }
+
+    /**
+     * get the root of the element, halving the path on the way
+     */
+    long find(long p) {
+        long parent = parent(p);
+        while (p != parent) {
+            long grandparent = parent(parent);
+            setParent(p, grandparent);
+            p = grandparent;
+            parent = parent(p);
+        }
+        return p;
+    }
+
+    /**
+     * merge the components of two elements, keeping the bottom flag on the new root
+     */
+    void union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) return;
+        boolean connected = get(bottom, rootP) || get(bottom, rootQ);
+        if (rank(rootP) < rank(rootQ)) {
+            long swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        setParent(rootQ, rootP);
+        if (rank(rootP) == rank(rootQ)) rank[(int) (rootP >>> shift)][(int) (rootP & mask)]++;
+        if (connected) set(bottom, rootP);
+    }
+}
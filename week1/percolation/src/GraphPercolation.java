@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/**
+ * Site or bond percolation on a sparse graph, tracking the size of the
+ * largest cluster as elements are opened.
+ *
+ * In site percolation the elements are the vertices, and an open vertex
+ * joins the clusters of its open neighbors. In bond percolation the
+ * elements are the edges, every vertex is present from the start, and an
+ * open edge joins the clusters of its endpoints.
+ */
+public class GraphPercolation {
+
+    /**
+     * what gets opened
+     */
+    public enum Mode {
+        /** vertices */
+        SITE,
+        /** edges */
+        BOND
+    }
+
+    private SparseGraph graph;            // the graph
+    private Mode mode;                    // site or bond percolation
+    private int[] offsets;                // CSR offsets of the graph, site mode only
+    private int[] adjacent;               // CSR adjacency of the graph, site mode only
+    private boolean[] open;               // if element is open
+    private int[] parent;                 // union find parent links over the vertices
+    private int[] size;                   // union find component sizes
+    private int largest;                  // size of the largest cluster
+
+    /**
+     * Initializes percolation on the graph with all elements closed.
+     * @param graph the graph
+     * @param mode site or bond percolation
+     */
+    public GraphPercolation(SparseGraph graph, Mode mode) {
+        this.graph = graph;
+        this.mode = mode;
+        if (mode == Mode.SITE) {
+            offsets = graph.offsets();
+            adjacent = graph.adjacent();
+        }
+        open = new boolean[elements()];
+        parent = new int[graph.V()];
+        size = new int[graph.V()];
+        reset();
+    }
+
+    /**
+     * closes all elements again
+     */
+    public void reset() {
+        for (int v = 0; v < parent.length; v++) {
+            parent[v] = v;
+            size[v] = 1;
+        }
+        Arrays.fill(open, false);
+        largest = mode == Mode.BOND && parent.length > 0 ? 1 : 0;
+    }
+
+    /**
+     * number of elements that can be opened: vertices or edges
+     */
+    public int elements() {
+        return mode == Mode.SITE ? graph.V() : graph.E();
+    }
+
+    /**
+     * get the root of the vertex, halving the path on the way
+     */
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * merge the clusters of two vertices and update the largest size
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+        if (size[rootP] < size[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        if (size[rootP] > largest) largest = size[rootP];
+    }
+
+    /**
+     * open element k, a vertex or an edge, if not already open
+     */
+    public void open(int k) {
+        if (k < 0 || k >= open.length) throw new IndexOutOfBoundsException("Index out of bounds");
+        if (open[k]) return;
+        open[k] = true;
+        if (mode == Mode.BOND) {
+            union(graph.from(k), graph.to(k));
+            return;
+        }
+        if (largest == 0) largest = 1;
+        for (int i = offsets[k]; i < offsets[k + 1]; i++) {
+            if (open[adjacent[i]]) union(k, adjacent[i]);
+        }
+    }
+
+    /**
+     * is element k open?
+     */
+    public boolean isOpen(int k) {
+        if (k < 0 || k >= open.length) throw new IndexOutOfBoundsException("Index out of bounds");
+        return open[k];
+    }
+
+    /**
+     * number of vertices in the largest cluster
+     */
+    public int largestCluster() {
+        return largest;
+    }
+
+    /**
+     * Unit test: a small graph, then random graphs checked against a
+     * recount of the largest cluster after every open
+     */
+    public static void main(String[] args) {
+        // a path 0-1-2, an edge 3-4 and an isolated vertex 5
+        SparseGraph g = new SparseGraph(6, new int[]{0, 1, 3}, new int[]{1, 2, 4});
+        GraphPercolation site = new GraphPercolation(g, Mode.SITE);
+        StdOut.println("site, nothing open, largest: " + site.largestCluster() + " should be 0");
+        site.open(0);
+        site.open(2);
+        StdOut.println("site, 0 and 2 open, largest: " + site.largestCluster() + " should be 1");
+        site.open(1);
+        StdOut.println("site, 0 to 2 open, largest: " + site.largestCluster() + " should be 3");
+        site.open(3);
+        site.open(4);
+        StdOut.println("site, 3 and 4 open too, largest: " + site.largestCluster() + " should be 3");
+        site.reset();
+        StdOut.println("site, after reset: " + site.largestCluster() + " should be 0");
+
+        GraphPercolation bond = new GraphPercolation(g, Mode.BOND);
+        StdOut.println("bond, nothing open, largest: " + bond.largestCluster() + " should be 1");
+        bond.open(2);
+        StdOut.println("bond, 3-4 open, largest: " + bond.largestCluster() + " should be 2");
+        bond.open(0);
+        bond.open(1);
+        StdOut.println("bond, all edges open, largest: " + bond.largestCluster() + " should be 3");
+        bond.reset();
+        StdOut.println("bond, after reset: " + bond.largestCluster() + " should be 1");
+
+        int mismatches = 0;
+        for (int t = 0; t < 50; t++) {
+            int V = 1 + StdRandom.uniform(40);
+            int E = StdRandom.uniform(2 * V);
+            int[] from = new int[E];
+            int[] to = new int[E];
+            for (int e = 0; e < E; e++) {
+                from[e] = StdRandom.uniform(V);
+                to[e] = StdRandom.uniform(V);
+            }
+            SparseGraph graph = new SparseGraph(V, from, to);
+            for (Mode mode : Mode.values()) {
+                GraphPercolation perc = new GraphPercolation(graph, mode);
+                for (int k = 0; k < 2 * perc.elements(); k++) {
+                    perc.open(StdRandom.uniform(perc.elements()));
+                    if (perc.largestCluster() != largestByRecount(graph, perc)) mismatches++;
+                }
+            }
+        }
+        StdOut.println("mismatches with a recount on 50 random graphs: " + mismatches + " should be 0");
+    }
+
+    // unit test helper: the largest cluster, found by a depth-first search
+    // over the open elements
+    private static int largestByRecount(SparseGraph graph, GraphPercolation perc) {
+        int V = graph.V();
+        boolean[] present = new boolean[V];
+        boolean[][] linked = new boolean[V][V];
+        for (int v = 0; v < V; v++) present[v] = perc.mode == Mode.BOND || perc.isOpen(v);
+        for (int e = 0; e < graph.E(); e++) {
+            int v = graph.from(e);
+            int w = graph.to(e);
+            if (perc.mode == Mode.BOND ? perc.isOpen(e) : present[v] && present[w]) {
+                linked[v][w] = true;
+                linked[w][v] = true;
+            }
+        }
+        boolean[] seen = new boolean[V];
+        int largest = 0;
+        for (int v = 0; v < V; v++) {
+            if (!present[v] || seen[v]) continue;
+            int size = 0;
+            int[] stack = new int[V];
+            int top = 0;
+            stack[top++] = v;
+            seen[v] = true;
+            while (top > 0) {
+                int u = stack[--top];
+                size++;
+                for (int w = 0; w < V; w++) {
+                    if (linked[u][w] && !seen[w]) {
+                        seen[w] = true;
+                        stack[top++] = w;
+                    }
+                }
+            }
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+}
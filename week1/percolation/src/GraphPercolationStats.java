@@ -0,0 +1,143 @@
+import java.util.Random;
+
+/**
+ * Monte carlo simulation of site or bond percolation on a sparse graph:
+ * the mean size of the largest cluster as a function of the fraction of
+ * open elements, with the trials spread over worker threads.
+ */
+public class GraphPercolationStats {
+    private int points;                   // densities are k / points for k = 0 to points
+    private int vertices;                 // number of vertices of the graph
+    private long[] largestSum;            // sum over trials of the largest cluster at each density
+    private int trials;                   // number of experiments
+
+    /**
+     * perform T independent experiments, each opening all elements of the
+     * graph in random order and recording the largest cluster at the
+     * densities 0, 1 / points, ..., 1. The results only depend on the
+     * seed, not on the number of threads.
+     * @param graph the graph
+     * @param mode site or bond percolation
+     * @param T number of experiments
+     * @param points number of density steps
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     */
+    public GraphPercolationStats(SparseGraph graph, GraphPercolation.Mode mode,
+                                 int T, int points, long seed, int threads) {
+        if (T <= 0 || points <= 0) {
+            throw new IllegalArgumentException("Number of tests and density steps should be bigger than 0");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads should be at least 1");
+        }
+        this.points = points;
+        vertices = graph.V();
+        trials = T;
+        Experiment[] experiments = new Experiment[Math.min(threads, T)];
+        for (int i = 0; i < experiments.length; i++) {
+            experiments[i] = new Experiment(new GraphPercolation(graph, mode), points);
+        }
+        TrialExecutor executor = new TrialExecutor(experiments);
+        try {
+            executor.run(0, T, seed);
+        } finally {
+            executor.shutdown();
+        }
+        largestSum = new long[points + 1];      // integer sums, so the order does not matter
+        for (Experiment experiment : experiments) {
+            for (int k = 0; k <= points; k++) largestSum[k] += experiment.largestSum[k];
+        }
+    }
+
+    // a thread per core, as long as their state takes at most about three
+    // quarters of the heap left after the graph: per element an int of
+    // the order and a boolean, per vertex an int parent and size, and in
+    // site mode the adjacency lists the workers share
+    private static int defaultThreads(SparseGraph graph, GraphPercolation.Mode mode) {
+        Runtime runtime = Runtime.getRuntime();
+        double free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        int elements = mode == GraphPercolation.Mode.SITE ? graph.V() : graph.E();
+        if (mode == GraphPercolation.Mode.SITE) free -= 4.0 * graph.V() + 8.0 * graph.E();
+        double bytes = 5.0 * elements + 8.0 * graph.V() + 1;
+        long fit = (long) (0.75 * free / bytes);
+        return (int) Math.max(1, Math.min(runtime.availableProcessors(), fit));
+    }
+
+    // runs experiments for one worker thread on its own copy of the state
+    private static class Experiment implements TrialExecutor.Worker {
+        private final GraphPercolation perc;    // state reused across trials
+        private final int[] order;              // the elements, shuffled
+        private final int points;               // number of density steps
+        private final long[] largestSum;        // this worker's sums at each density
+
+        Experiment(GraphPercolation perc, int points) {
+            this.perc = perc;
+            this.points = points;
+            order = new int[perc.elements()];
+            largestSum = new long[points + 1];
+        }
+
+        public void run(int trial, Random random) {
+            perc.reset();
+            int n = order.length;
+            for (int k = 0; k < n; k++) order[k] = k;
+            int opened = 0;
+            for (int k = 0; k <= points; k++) {
+                int target = (int) ((long) k * n / points);
+                for (; opened < target; opened++) {       // incremental Fisher-Yates
+                    int r = opened + random.nextInt(n - opened);
+                    int element = order[r];
+                    order[r] = order[opened];
+                    order[opened] = element;
+                    perc.open(element);
+                }
+                largestSum[k] += perc.largestCluster();
+            }
+        }
+    }
+
+    /**
+     * number of density steps
+     */
+    public int points() {
+        return points;
+    }
+
+    /**
+     * fraction of open elements at density step k
+     */
+    public double density(int k) {
+        if (k < 0 || k > points) throw new IndexOutOfBoundsException("Index out of bounds");
+        return ((double) k) / points;
+    }
+
+    /**
+     * mean fraction of the vertices in the largest cluster at density step k
+     */
+    public double largestClusterFraction(int k) {
+        if (k < 0 || k > points) throw new IndexOutOfBoundsException("Index out of bounds");
+        if (vertices == 0) return 0;
+        return ((double) largestSum[k]) / trials / vertices;
+    }
+
+    /**
+     * show results. Runs as many threads as there are cores, unless fewer
+     * copies of the state fit in the heap.
+     */
+    public static void main(String[] args) {
+        Stopwatch timer = new Stopwatch();
+        SparseGraph graph = SparseGraph.fromEdgeList(args[0]);
+        GraphPercolation.Mode mode = GraphPercolation.Mode.valueOf(args[1]);
+        int T = Integer.parseInt(args[2]);
+        int points = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : defaultThreads(graph, mode);
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : StdRandom.uniform(Integer.MAX_VALUE);
+        GraphPercolationStats ps = new GraphPercolationStats(graph, mode, T, points, seed, threads);
+        StdOut.println("density\tlargest cluster");
+        for (int k = 0; k <= points; k++) {
+            StdOut.println(ps.density(k) + "\t" + ps.largestClusterFraction(k));
+        }
+        StdOut.println("Time elapsed\t= " + timer.elapsedTime());
+    }
+}
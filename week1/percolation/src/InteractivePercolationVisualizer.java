@@ -8,6 +8,7 @@
  *  Then, the user repeatedly clicks sites to open with the mouse.
  *  After each site is opened, it draws full sites in light blue,
  *  open sites (that aren't full) in white, and blocked sites in black.
+ *  Only the sites that changed are redrawn.
  *
  ****************************************************************************/
 
@@ -24,6 +25,8 @@ public class InteractivePercolationVisualizer {
         StdDraw.show(0);
         Percolation perc = new Percolation(N);
         PercolationVisualizer.draw(perc, N);
+        PercolationVisualizer.Repainter repainter = new PercolationVisualizer.Repainter(N);
+        perc.setListener(repainter);
         StdDraw.show(0);
 
         while (true) {
@@ -47,9 +50,9 @@ public class InteractivePercolationVisualizer {
                     perc.open(i, j);
                 }
 
-                // draw N-by-N percolation system
+                // draw the status of the N-by-N percolation system
                 StdDraw.show(0);
-                PercolationVisualizer.draw(perc, N);
+                repainter.drawStatus(perc);
             }
             StdDraw.show(20);
         }
@@ -0,0 +1,213 @@
+import java.util.Arrays;
+
+/**
+ * Site percolation on a d-dimensional lattice with L sites per side and a
+ * pluggable neighborhood. Sites are numbered in row-major order of their
+ * coordinates; the system percolates when a site with first coordinate 0
+ * is connected to a site with first coordinate L - 1.
+ *
+ * Uses the same technique as CompactPercolation: a virtual top site in
+ * union find, and a bottom flag kept on each component root, in a
+ * CompactUnionFind. Open state is packed in a bitset.
+ */
+public class LatticePercolation {
+    private static final long MAX_SITES = Integer.MAX_VALUE - 9;
+
+    /**
+     * which sites are adjacent
+     */
+    public enum Neighborhood {
+        /** sites one step apart along one axis, 2d neighbors */
+        VON_NEUMANN {
+            int[][] offsets(int d, boolean odd) {
+                int[][] offsets = new int[2 * d][d];
+                for (int k = 0; k < d; k++) {
+                    offsets[2 * k][k] = -1;
+                    offsets[2 * k + 1][k] = 1;
+                }
+                return offsets;
+            }
+        },
+        /** sites at most one step apart along every axis, 3^d - 1 neighbors */
+        MOORE {
+            int[][] offsets(int d, boolean odd) {
+                int count = 1;
+                for (int k = 0; k < d; k++) count *= 3;
+                int[][] offsets = new int[count - 1][d];
+                int n = 0;
+                for (int c = 0; c < count; c++) {
+                    if (c == count / 2) continue;           // all zero, the site itself
+                    for (int k = 0, rest = c; k < d; k++, rest /= 3) {
+                        offsets[n][k] = rest % 3 - 1;
+                    }
+                    n++;
+                }
+                return offsets;
+            }
+        },
+        /** square lattice plus one diagonal, 6 neighbors, 2D only */
+        TRIANGULAR {
+            int[][] offsets(int d, boolean odd) {
+                return new int[][]{{-1, 0}, {-1, 1}, {0, 1}, {1, 0}, {1, -1}, {0, -1}};
+            }
+        },
+        /** honeycomb as a brick wall, 3 neighbors, 2D only */
+        HEXAGONAL {
+            int[][] offsets(int d, boolean odd) {
+                if (odd) return new int[][]{{0, 1}, {1, 0}, {0, -1}};
+                else     return new int[][]{{-1, 0}, {0, 1}, {0, -1}};
+            }
+        };
+
+        /**
+         * offsets to the neighbors of a site in d dimensions, where odd
+         * tells if the coordinates of the site add up to an odd number
+         */
+        abstract int[][] offsets(int d, boolean odd);
+    }
+
+    private int dimension;                // number of axes
+    private int sideLength;               // sites per side
+    private int virtualTop;               // the virtual top, after the last site
+    private int[] stride;                 // site index step along each axis
+    private int[][] evenOffsets;          // neighbor offsets of sites with even coordinate sum
+    private int[][] oddOffsets;           // neighbor offsets of sites with odd coordinate sum
+    private int[] coords;                 // scratch coordinates of the site being opened
+    private long[] open;                  // if site is open
+    private CompactUnionFind uf;          // components of open sites and the virtual top
+
+    /**
+     * Initializes a lattice with all sites blocked.
+     * @param d number of dimensions
+     * @param L sites per side
+     * @param neighborhood which sites are adjacent
+     */
+    public LatticePercolation(int d, int L, Neighborhood neighborhood) {
+        if (d <= 0 || L <= 0) {
+            throw new IllegalArgumentException("Dimension and side length should be bigger than 0");
+        }
+        if (d != 2 && (neighborhood == Neighborhood.TRIANGULAR
+                || neighborhood == Neighborhood.HEXAGONAL)) {
+            throw new IllegalArgumentException(neighborhood + " lattices are 2-dimensional");
+        }
+        long n = 1;
+        for (int k = 0; k < d; k++) {
+            n *= L;
+            if (n > MAX_SITES) throw new IllegalArgumentException("Too many sites");
+        }
+        dimension = d;
+        sideLength = L;
+        virtualTop = (int) n;
+        stride = new int[d];
+        stride[d - 1] = 1;
+        for (int k = d - 2; k >= 0; k--) stride[k] = stride[k + 1] * L;
+        evenOffsets = neighborhood.offsets(d, false);
+        oddOffsets = neighborhood.offsets(d, true);
+        coords = new int[d];
+        open = new long[(virtualTop + 63) >>> 6];
+        uf = new CompactUnionFind(virtualTop + 1);
+        reset();
+    }
+
+    /**
+     * number of sites in the lattice
+     */
+    public int sites() {
+        return virtualTop;
+    }
+
+    /**
+     * index of the site with the given coordinates, each from 0 to L - 1
+     */
+    public int site(int... coordinates) {
+        if (coordinates.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " coordinates");
+        }
+        int site = 0;
+        for (int k = 0; k < dimension; k++) {
+            if (coordinates[k] < 0 || coordinates[k] >= sideLength) {
+                throw new IndexOutOfBoundsException("Index out of bounds");
+            }
+            site += coordinates[k] * stride[k];
+        }
+        return site;
+    }
+
+    /**
+     * blocks all sites again, so the lattice can be reused without allocating
+     */
+    public void reset() {
+        uf.reset();
+        Arrays.fill(open, 0L);
+        for (int s = virtualTop - stride[0]; s < virtualTop; s++) uf.setBottom(s);
+    }
+
+    /**
+     * validates the index of the site
+     */
+    private void validateSite(int site) {
+        if (site < 0 || site >= virtualTop) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+    }
+
+    /**
+     * open the site if not already open
+     */
+    public void open(int site) {
+        validateSite(site);
+        if (CompactUnionFind.get(open, site)) return;
+        CompactUnionFind.set(open, site);
+        int parity = 0;
+        for (int k = 0, rest = site; k < dimension; k++) {
+            coords[k] = rest / stride[k];
+            rest -= coords[k] * stride[k];
+            parity += coords[k];
+        }
+        if (coords[0] == 0) uf.union(site, virtualTop);
+        int[][] offsets = (parity & 1) == 0 ? evenOffsets : oddOffsets;
+        for (int[] offset : offsets) {
+            int neighbor = site;
+            for (int k = 0; k < dimension && neighbor >= 0; k++) {
+                int c = coords[k] + offset[k];
+                if (c < 0 || c >= sideLength) neighbor = -1;
+                else                          neighbor += offset[k] * stride[k];
+            }
+            if (neighbor >= 0 && CompactUnionFind.get(open, neighbor)) uf.union(site, neighbor);
+        }
+    }
+
+    /**
+     * is the site open?
+     */
+    public boolean isOpen(int site) {
+        validateSite(site);
+        return CompactUnionFind.get(open, site);
+    }
+
+    /**
+     * is the site full?
+     */
+    public boolean isFull(int site) {
+        validateSite(site);
+        return uf.find(site) == uf.find(virtualTop);
+    }
+
+    /**
+     * does the system percolate?
+     */
+    public boolean percolates() {
+        return uf.isBottom(virtualTop);
+    }
+
+    /**
+     * percolates a small cubic lattice.
+     */
+    public static void main(String[] args) {
+        LatticePercolation lattice = new LatticePercolation(3, 4, Neighborhood.VON_NEUMANN);
+        for (int x = 0; x < 4; x++) lattice.open(lattice.site(x, 1, 2));
+        StdOut.println(lattice.percolates() + " should be true");
+        StdOut.println(lattice.isFull(lattice.site(3, 1, 2)) + " should be true");
+        StdOut.println(lattice.isFull(lattice.site(3, 1, 1)) + " should be false");
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Random;
+
+/**
+ * Monte carlo simulation to estimate the percolation threshold of a
+ * d-dimensional lattice, with the trials spread over worker threads.
+ */
+public class LatticePercolationStats {
+    private double[] percolationThreshold;  // the percentage of sites opened to percolate
+
+    /**
+     * perform T independent experiments on a lattice with L^d sites. The
+     * results only depend on the seed, not on the number of threads. Every
+     * thread has its own lattice of a bit over 5 bytes per site, so a 500^3
+     * lattice takes about 650 MB per thread.
+     * @param d number of dimensions
+     * @param L sites per side
+     * @param neighborhood which sites are adjacent
+     * @param T number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     */
+    public LatticePercolationStats(int d, int L, LatticePercolation.Neighborhood neighborhood,
+                                   int T, long seed, int threads) {
+        if (T <= 0) {
+            throw new IllegalArgumentException("Number of tests should be bigger than 0");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads should be at least 1");
+        }
+        percolationThreshold = new double[T];
+        Experiment[] experiments = new Experiment[Math.min(threads, T)];
+        for (int i = 0; i < experiments.length; i++) {
+            experiments[i] = new Experiment(new LatticePercolation(d, L, neighborhood),
+                                            percolationThreshold);
+        }
+        TrialExecutor executor = new TrialExecutor(experiments);
+        try {
+            executor.run(0, T, seed);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // a thread per core, as long as their lattices take at most about
+    // three quarters of the maximum heap size
+    private static int defaultThreads(int d, int L) {
+        double bytes = 5.25 * Math.pow(L, d);          // a lattice, see LatticePercolation
+        long fit = (long) (0.75 * Runtime.getRuntime().maxMemory() / bytes);
+        return (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), fit));
+    }
+
+    // runs experiments for one worker thread on its own lattice; draws
+    // sites by rejection rather than a permutation, which would cost
+    // another int per site while thresholds of most lattices are low
+    // enough that few draws are rejected
+    private static class Experiment implements TrialExecutor.Worker {
+        private final LatticePercolation lattice;   // lattice reused across trials
+        private final double[] thresholds;          // where to record the results
+
+        Experiment(LatticePercolation lattice, double[] thresholds) {
+            this.lattice = lattice;
+            this.thresholds = thresholds;
+        }
+
+        public void run(int trial, Random random) {
+            lattice.reset();
+            int n = lattice.sites();
+            int opened = 0;
+            while (!lattice.percolates()) {
+                int site = random.nextInt(n);
+                if (!lattice.isOpen(site)) {
+                    lattice.open(site);
+                    opened++;
+                }
+            }
+            thresholds[trial] = ((double) opened) / n;
+        }
+    }
+
+    /**
+     * sample mean of the percolation threshold
+     */
+    public double mean() {
+        return StdStats.mean(percolationThreshold);
+    }
+
+    /**
+     * sample standard deviation of percolation threshold
+     */
+    public double stddev() {
+        return StdStats.stddev(percolationThreshold);
+    }
+
+    /**
+     * lower bound of the 95% confidence interval
+     */
+    public double confidenceLo() {
+        return mean() - 1.96 * stddev() / Math.sqrt(percolationThreshold.length);
+    }
+
+    /**
+     * upper bound of the 95% confidence interval
+     */
+    public double confidenceHi() {
+        return mean() + 1.96 * stddev() / Math.sqrt(percolationThreshold.length);
+    }
+
+    /**
+     * show results. Runs as many threads as there are cores, unless fewer
+     * lattices fit in the maximum heap size.
+     */
+    public static void main(String[] args) {
+        Stopwatch timer = new Stopwatch();
+        int d = Integer.parseInt(args[0]);
+        int L = Integer.parseInt(args[1]);
+        LatticePercolation.Neighborhood neighborhood = LatticePercolation.Neighborhood.valueOf(args[2]);
+        int T = Integer.parseInt(args[3]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : defaultThreads(d, L);
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : StdRandom.uniform(Integer.MAX_VALUE);
+        LatticePercolationStats ps = new LatticePercolationStats(d, L, neighborhood, T, seed, threads);
+        StdOut.println("mean\t\t\t\t\t= " + ps.mean());
+        StdOut.println("stddev\t\t\t\t\t= " + ps.stddev());
+        StdOut.println("95% confidence interval\t= " + ps.confidenceLo() + ", " + ps.confidenceHi());
+        StdOut.println("Time elapsed\t\t\t= " + timer.elapsedTime());
+    }
+}
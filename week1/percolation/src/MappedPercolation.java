@@ -0,0 +1,362 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Percolation whose sites and union find arrays live in a memory-mapped
+ * file instead of on the heap, so the OS page cache does the paging.
+ * A grid backed by a named file can be checkpointed and picked up again
+ * by a later run. Close the grid when done with it: that unmaps the file,
+ * and deletes it if it was a temporary one.
+ *
+ * File layout: a header (magic, grid size), one state byte per site
+ * (bit 0 open, bit 1 connected to bottom, bits 2-7 union find rank),
+ * then one parent link per site, stored as the site xor its parent in an
+ * unsigned int, so 0 for a root. The virtual top comes after the last
+ * site in both arrays. Sites have long ids and N goes up to 65535.
+ * A new file is all zeros, so only the bottom row is written to set up a
+ * grid, and a large grid takes disk space only for the pages it touches.
+ */
+public class MappedPercolation implements PercolationModel, Closeable {
+    private static final int MAX_SIZE = 65535;          // largest N with N * N + 1 unsigned int links
+    private static final int MAGIC = 0x50524332;        // "PRC2", the layout with xor links
+    private static final long HEADER = 64;              // header bytes before the states
+    private static final int SEGMENT_SHIFT = 30;        // one mapping per GB of file
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int OPEN = 1;
+    private static final int BOTTOM = 2;
+    private static final int RANK_SHIFT = 2;
+
+    private int gridSize;                 // grid size
+    private long virtualTop;              // the virtual top, after the last site
+    private long length;                  // file length
+    private long parentOffset;            // file offset of the parent links
+    private MappedByteBuffer[] segments;  // the mapped file, a GB at a time, null once closed
+    private File file;                    // the backing file
+    private boolean temporary;            // if the file is deleted on close
+    private boolean clean;                // if no site was opened since the grid was blocked
+
+    /**
+     * Initializes a grid with all sites blocked, backed by a temporary file
+     * in java.io.tmpdir. That is RAM-backed on many systems; pass a
+     * directory on disk to the other constructor for grids larger than memory.
+     * @param N the grid size
+     */
+    public MappedPercolation(int N) {
+        this(N, null);
+    }
+
+    /**
+     * Opens the grid stored in the file, or initializes a grid with all
+     * sites blocked if the file does not hold an N-by-N grid. If the file
+     * is a directory, or null for java.io.tmpdir, the grid is backed by a
+     * temporary file created there instead.
+     * @param N the grid size
+     * @param file the backing file, or the directory for a temporary one
+     */
+    public MappedPercolation(int N, File file) {
+        if (N <= 0 || N > MAX_SIZE) {
+            throw new IllegalArgumentException("Grid size should be between 1 and " + MAX_SIZE);
+        }
+        if (file == null || file.isDirectory()) {
+            file = createTempFile(file);
+            temporary = true;
+        }
+        this.file = file;
+        gridSize = N;
+        virtualTop = (long) N * N;
+        parentOffset = (HEADER + virtualTop + 1 + 3) & ~3L;   // parent links are int aligned
+        length = parentOffset + 4L * (virtualTop + 1);
+        boolean resume = holdsGrid(file, N, length);
+        try {
+            map(!resume);
+        } catch (IOException e) {
+            if (temporary) file.delete();
+            throw new IllegalArgumentException("Could not map " + file, e);
+        }
+        if (!resume) {
+            clean = true;
+            reset();
+        }
+    }
+
+    // does the file hold an N-by-N grid of the given file length?
+    private static boolean holdsGrid(File file, int N, long length) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                return raf.length() >= length && raf.readInt() == MAGIC && raf.readInt() == N;
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // maps the file a GB at a time, first cutting it to zero length if
+    // asked, so that it is mapped back in as zeros without writing them
+    private void map(boolean truncate) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (truncate) raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer[] mapped = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int k = 0; k < mapped.length; k++) {
+                long position = (long) k << SEGMENT_SHIFT;
+                long size = Math.min(length - position, SEGMENT_MASK + 1);
+                mapped[k] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            }
+            segments = mapped;
+        } finally {
+            raf.close();                      // the mappings stay valid
+        }
+    }
+
+    // temporary backing file in the directory, removed on close or else
+    // when the JVM exits
+    private static File createTempFile(File directory) {
+        try {
+            File file = File.createTempFile("percolation", ".grid", directory);
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create a grid file in " + directory, e);
+        }
+    }
+
+    /**
+     * unmaps the file, and deletes it if it is temporary. The grid cannot
+     * be used afterwards; closing it again does nothing.
+     */
+    public void close() {
+        if (segments == null) return;
+        MappedByteBuffer[] mapped = segments;
+        segments = null;                      // later accesses fail instead of touching unmapped memory
+        for (MappedByteBuffer segment : mapped) unmap(segment);
+        if (temporary) file.delete();
+    }
+
+    // unmaps the buffer now rather than when it is garbage collected, through
+    // sun.misc.Unsafe.invokeCleaner where the JVM has it (Java 9 and later)
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            // not available: the mapping goes away with the buffer
+        }
+    }
+
+    /**
+     * the backing file
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * blocks all sites again. Unless no site was opened since the grid was
+     * last blocked, the file is cut and mapped again, so this takes time
+     * in the size of the bottom row rather than of the grid.
+     */
+    public void reset() {
+        if (!clean) {
+            MappedByteBuffer[] old = segments;
+            try {
+                map(true);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not reset " + file, e);
+            }
+            for (MappedByteBuffer segment : old) unmap(segment);
+            clean = true;
+        }
+        segments[0].putInt(0, MAGIC);
+        segments[0].putInt(4, gridSize);
+        for (long s = virtualTop - gridSize; s < virtualTop; s++) setState(s, BOTTOM);
+    }
+
+    /**
+     * writes the grid through to the file, so a later run can resume from it
+     */
+    public void checkpoint() {
+        for (MappedByteBuffer segment : segments) segment.force();
+    }
+
+    private int state(long site) {
+        long offset = HEADER + site;
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK)) & 0xff;
+    }
+
+    private void setState(long site, int state) {
+        long offset = HEADER + site;
+        segments[(int) (offset >>> SEGMENT_SHIFT)].put((int) (offset & SEGMENT_MASK), (byte) state);
+    }
+
+    private long parent(long site) {
+        long offset = parentOffset + 4L * site;
+        int link = segments[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+        return site ^ (link & 0xFFFFFFFFL);
+    }
+
+    private void setParent(long site, long parent) {
+        long offset = parentOffset + 4L * site;
+        segments[(int) (offset >>> SEGMENT_SHIFT)].putInt((int) (offset & SEGMENT_MASK), (int) (site ^ parent));
+    }
+
+    // id of site (i, j), in row-major order
+    private long site(int i, int j) {
+        return (long) (i - 1) * gridSize + (j - 1);
+    }
+
+    /**
+     * validates the indices of the site
+     */
+    private void validateIndices(int i, int j) {
+        if (i <= 0 || i > gridSize || j <= 0 || j > gridSize) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+    }
+
+    /**
+     * get the root of the site, halving the path on the way
+     */
+    private long find(long p) {
+        long parent = parent(p);
+        while (p != parent) {
+            long grandparent = parent(parent);
+            setParent(p, grandparent);
+            p = grandparent;
+            parent = parent(p);
+        }
+        return p;
+    }
+
+    /**
+     * merge the components of two sites by rank, keeping the bottom flag on the new root
+     */
+    private void union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) return;
+        int stateP = state(rootP);
+        int stateQ = state(rootQ);
+        if ((stateP >>> RANK_SHIFT) < (stateQ >>> RANK_SHIFT)) {
+            long swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+            int swapState = stateP;
+            stateP = stateQ;
+            stateQ = swapState;
+        }
+        setParent(rootQ, rootP);
+        if ((stateP >>> RANK_SHIFT) == (stateQ >>> RANK_SHIFT)) stateP += 1 << RANK_SHIFT;
+        setState(rootP, stateP | (stateQ & BOTTOM));
+    }
+
+    /**
+     * open site (i, j) if not already open
+     */
+    public void open(int i, int j) {
+        validateIndices(i, j);
+        long site = site(i, j);
+        int state = state(site);
+        if ((state & OPEN) != 0) return;
+        clean = false;
+        setState(site, state | OPEN);
+        if (i == 1) union(site, virtualTop);
+        if (i > 1 && (state(site - gridSize) & OPEN) != 0) union(site, site - gridSize);
+        if (j < gridSize && (state(site + 1) & OPEN) != 0) union(site, site + 1);
+        if (i < gridSize && (state(site + gridSize) & OPEN) != 0) union(site, site + gridSize);
+        if (j > 1 && (state(site - 1) & OPEN) != 0) union(site, site - 1);
+    }
+
+    /**
+     * is site (i, j) open?
+     */
+    public boolean isOpen(int i, int j) {
+        validateIndices(i, j);
+        return (state(site(i, j)) & OPEN) != 0;
+    }
+
+    /**
+     * is site (i, j) full?
+     */
+    public boolean isFull(int i, int j) {
+        validateIndices(i, j);
+        return find(site(i, j)) == find(virtualTop);
+    }
+
+    /**
+     * does the system percolate?
+     */
+    public boolean percolates() {
+        return (state(find(virtualTop)) & BOTTOM) != 0;
+    }
+
+    /**
+     * Unit test: checkpoints a grid, reopens it from its file and checks it,
+     * then opens a column of a 50000-by-50000 grid
+     */
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("percolation-test", ".grid");
+        MappedPercolation p = new MappedPercolation(4, file);
+        Percolation reference = new Percolation(4);
+        for (int k = 0; k < 8; k++) {
+            int i = 1 + StdRandom.uniform(4);
+            int j = 1 + StdRandom.uniform(4);
+            p.open(i, j);
+            reference.open(i, j);
+        }
+        p.checkpoint();
+        p.close();
+        StdOut.println("file kept after close: " + file.exists() + " should be true");
+
+        MappedPercolation resumed = new MappedPercolation(4, file);
+        int mismatches = 0;
+        for (int i = 1; i <= 4; i++) {
+            for (int j = 1; j <= 4; j++) {
+                if (resumed.isOpen(i, j) != reference.isOpen(i, j)) mismatches++;
+                if (resumed.isFull(i, j) != reference.isFull(i, j)) mismatches++;
+            }
+        }
+        StdOut.println("mismatches after resume: " + mismatches + " should be 0");
+        StdOut.println("percolates: " + resumed.percolates() + " should be " + reference.percolates());
+        resumed.close();
+
+        MappedPercolation other = new MappedPercolation(5, file);
+        StdOut.println("isOpen(1, 1) for another grid size: " + other.isOpen(1, 1) + " should be false");
+        other.close();
+        file.delete();
+
+        MappedPercolation temp = new MappedPercolation(4);
+        temp.open(1, 1);
+        File tempFile = temp.file();
+        StdOut.println("temporary file exists: " + tempFile.exists() + " should be true");
+        temp.close();
+        StdOut.println("temporary file exists after close: " + tempFile.exists() + " should be false");
+
+        int big = 50000;                      // N * N overflows an int
+        MappedPercolation q = new MappedPercolation(big);
+        q.open(big, big);
+        StdOut.println("isOpen(" + big + ", " + big + "): " + q.isOpen(big, big) + " should be true");
+        StdOut.println("isFull(" + big + ", " + big + "): " + q.isFull(big, big) + " should be false");
+        for (int i = 1; i < big; i++) q.open(i, big);
+        StdOut.println("isFull(" + big + ", " + big + ") after opening its column: "
+                       + q.isFull(big, big) + " should be true");
+        StdOut.println("percolates: " + q.percolates() + " should be true");
+        StdOut.println("isFull(" + big + ", 1): " + q.isFull(big, 1) + " should be false");
+        q.reset();
+        StdOut.println("percolates after reset: " + q.percolates() + " should be false");
+        q.close();
+    }
+}
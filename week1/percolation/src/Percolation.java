@@ -1,34 +1,91 @@
+import java.util.Arrays;
+
 /**
  * Created by lu on 2/25/14.
  * percolation
  */
-public class Percolation {
-    private boolean[][] grid;             // the grid
+public class Percolation implements PercolationModel {
+    private static final byte OPEN = 1;           // site is open
+    private static final byte TOP = 2;            // component connected to top, on roots
+    private static final byte BOTTOM = 4;         // component connected to bottom, on roots
+
     private int gridSize;                 // grid size
-    private WeightedQuickUnionUF wquf;    // union find object
-    private int virtualTop;               // the virtual top
-    private boolean[] connectedBottom;    // if site connected to bottom
+    private byte[] state;                 // site flags, sites in row-major order
+    private int[] parent;                 // union find parent links
+    private int[] size;                   // union find component sizes
+    private boolean percolates;           // if some component has both flags
+    private int[] clustersOfSize;         // number of open clusters of each size
+    private int clusters;                 // number of open clusters
+    private int largest;                  // size of the largest open cluster
+    private SiteListener listener;        // told about changed sites, if any
+    private int[] next;                   // circular lists of component members, with a listener
+
+    /**
+     * Told which sites changed on each open, so that only those need redrawing.
+     * Rows and columns are numbered from 1 to N.
+     */
+    public interface SiteListener {
+        /** site (i, j) was opened */
+        void opened(int i, int j);
+
+        /** site (i, j) became full */
+        void filled(int i, int j);
+    }
 
     /**
      * Initializes a percolation grid with all sites blocked.
      * @param N the grid size
      */
     public Percolation(int N) {
+        if (N <= 0) {
+            throw new IllegalArgumentException("Grid size should be bigger than 0");
+        }
         gridSize = N;
-        wquf = new WeightedQuickUnionUF(N * N + 1); // extra one for the virtual top
-        virtualTop = 0;
-        grid = new boolean[N][N];
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                grid[i][j] = false;
-            }
+        state = new byte[N * N];
+        parent = new int[N * N];
+        size = new int[N * N];
+        clustersOfSize = new int[N * N + 1];
+        reset();
+    }
+
+    /**
+     * blocks all sites again, so the grid can be reused without allocating
+     */
+    public void reset() {
+        int n = gridSize * gridSize;
+        for (int s = 0; s < n; s++) {
+            parent[s] = s;
+            size[s] = 1;
+        }
+        Arrays.fill(state, (byte) 0);
+        percolates = false;
+        Arrays.fill(clustersOfSize, 0, largest + 1, 0);
+        clusters = 0;
+        largest = 0;
+        if (next != null) {
+            for (int s = 0; s < n; s++) next[s] = s;
         }
-        connectedBottom = new boolean[N * N + 1];   //extra one for the virtual top
-        for (int i = 0; i <= N * (N-1); i++) {
-            connectedBottom[i] = false;
+    }
+
+    /**
+     * report the sites changed by every following open to the listener,
+     * or stop reporting if it is null. Reporting costs time proportional
+     * to the number of changed sites.
+     */
+    public void setListener(SiteListener listener) {
+        this.listener = listener;
+        if (listener == null) {
+            next = null;
+            return;
         }
-        for (int i = N * (N - 1) + 1; i <= N * N; i++) {
-            connectedBottom[i] = true;
+        next = new int[state.length];         // link every site in after its root
+        for (int s = 0; s < next.length; s++) next[s] = s;
+        for (int s = 0; s < next.length; s++) {
+            int root = find(s);
+            if (root != s) {
+                next[s] = next[root];
+                next[root] = s;
+            }
         }
     }
 
@@ -49,60 +106,206 @@ public class Percolation {
     }
 
     /**
-     * get the neighbors for each site
+     * get the root of the site, halving the path on the way
+     */
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * merge the components of two sites, keeping the top and bottom flags on the new root
+     * @return the new root
      */
-    private int[][] getNeighbors(int i, int j) {
-        return new int[][]{{i - 1, j}, {i, j + 1}, {i + 1, j}, {i, j - 1}};
+    private int union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return rootP;
+        if (size[rootP] < size[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        if (next != null) {
+            if ((state[rootP] & TOP) != (state[rootQ] & TOP)) {
+                fill((state[rootP] & TOP) != 0 ? rootQ : rootP);
+            }
+            int swap = next[rootP];           // splice the member lists
+            next[rootP] = next[rootQ];
+            next[rootQ] = swap;
+        }
+        clustersOfSize[size[rootP]]--;
+        clustersOfSize[size[rootQ]]--;
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        state[rootP] |= state[rootQ];
+        clustersOfSize[size[rootP]]++;
+        clusters--;
+        if (size[rootP] > largest) largest = size[rootP];
+        return rootP;
     }
 
     /**
-     * get the union find array index
+     * tell the listener that all sites of the component became full
      */
-    private int getUnionFindIndex(int i, int j) {
-        return 1 + (i - 1) * gridSize + (j - 1);
+    private void fill(int root) {
+        int s = root;
+        do {
+            listener.filled(s / gridSize + 1, s % gridSize + 1);
+            s = next[s];
+        } while (s != root);
     }
 
     /**
-     * open site grid[i][j] if not already open
+     * open site (i, j) if not already open
      */
     public void open(int i, int j) {
         validateIndices(i, j);
-        if (!isOpen(i, j)) {
-            grid[i - 1][j - 1] = true;
-            int thisUFIndex = getUnionFindIndex(i, j);
-            if (i == 1) wquf.union(thisUFIndex, virtualTop);
-            for (int[] row : getNeighbors(i, j)) {
-                if (isValidIndices(row[0], row[1]) && isOpen(row[0], row[1])) {
-                    int thatUFIndex = getUnionFindIndex(row[0], row[1]);
-                    boolean connectBottom = connectedBottom[wquf.find(thisUFIndex)]
-                            || connectedBottom[wquf.find(thatUFIndex)];
-                    wquf.union(thisUFIndex, thatUFIndex);
-                    if (connectBottom) connectedBottom[wquf.find(thisUFIndex)] = true;
+        openSite((i - 1) * gridSize + (j - 1), i - 1, j - 1);
+    }
+
+    /**
+     * open the sites (rows[k], cols[k]) in order. All indices are validated
+     * before any site is opened.
+     * @return the index k whose site made the system percolate, or -1 if
+     *         the system did not start to percolate during this call
+     */
+    public int openAll(int[] rows, int[] cols) {
+        if (rows.length != cols.length) {
+            throw new IllegalArgumentException("Rows and columns should have the same length");
+        }
+        for (int k = 0; k < rows.length; k++) validateIndices(rows[k], cols[k]);
+        boolean percolated = percolates();
+        for (int k = 0; k < rows.length; k++) {
+            int row = rows[k] - 1;
+            int col = cols[k] - 1;
+            if (openSite(row * gridSize + col, row, col) && !percolated && percolates()) {
+                for (int rest = k + 1; rest < rows.length; rest++) {
+                    openSite((rows[rest] - 1) * gridSize + cols[rest] - 1, rows[rest] - 1, cols[rest] - 1);
                 }
+                return k;
             }
         }
+        return -1;
     }
 
     /**
-     * is site grid[i][j] open?
+     * open the sites with the given ids in order, where site (i, j) has id
+     * (i - 1) * N + (j - 1). All ids are validated before any site is opened.
+     * @return the index k whose site made the system percolate, or -1 if
+     *         the system did not start to percolate during this call
+     */
+    public int openAll(int[] siteIds) {
+        int n = gridSize * gridSize;
+        for (int site : siteIds) {
+            if (site < 0 || site >= n) throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+        boolean percolated = percolates();
+        for (int k = 0; k < siteIds.length; k++) {
+            int site = siteIds[k];
+            if (openSite(site, site / gridSize, site % gridSize) && !percolated && percolates()) {
+                for (int rest = k + 1; rest < siteIds.length; rest++) {
+                    openSite(siteIds[rest], siteIds[rest] / gridSize, siteIds[rest] % gridSize);
+                }
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * open a valid site given its id and 0-based row and column
+     * @return true if the site was blocked before
+     */
+    private boolean openSite(int site, int row, int col) {
+        if (state[site] != 0) return false;
+        byte flags = OPEN;
+        if (row == 0) flags |= TOP;
+        if (row + 1 == gridSize) flags |= BOTTOM;
+        state[site] = flags;
+        clustersOfSize[1]++;
+        clusters++;
+        if (largest == 0) largest = 1;
+        if (listener != null) {
+            listener.opened(row + 1, col + 1);
+            if (row == 0) listener.filled(row + 1, col + 1);
+        }
+        int root = site;
+        if (row > 0 && state[site - gridSize] != 0) root = union(root, site - gridSize);
+        if (col + 1 < gridSize && state[site + 1] != 0) root = union(root, site + 1);
+        if (row + 1 < gridSize && state[site + gridSize] != 0) root = union(root, site + gridSize);
+        if (col > 0 && state[site - 1] != 0) root = union(root, site - 1);
+        if ((state[root] & (TOP | BOTTOM)) == (TOP | BOTTOM)) percolates = true;
+        return true;
+    }
+
+    /**
+     * is site (i, j) open?
      */
     public boolean isOpen(int i, int j) {
-        return grid[i - 1][j - 1];
+        validateIndices(i, j);
+        return state[(i - 1) * gridSize + (j - 1)] != 0;
     }
 
     /**
-     * is grid[i][j] full?
+     * is site (i, j) full?
      */
     public boolean isFull(int i, int j) {
         validateIndices(i, j);
-        return wquf.connected(virtualTop, getUnionFindIndex(i, j));
+        return (state[find((i - 1) * gridSize + (j - 1))] & TOP) != 0;
     }
 
     /**
      * does the system percolate?
      */
     public boolean percolates() {
-        return connectedBottom[wquf.find(0)];
+        return percolates;
+    }
+
+    /**
+     * number of sites in the open cluster of site (i, j), 0 if it is blocked
+     */
+    public int clusterSize(int i, int j) {
+        validateIndices(i, j);
+        int site = (i - 1) * gridSize + (j - 1);
+        return state[site] == 0 ? 0 : size[find(site)];
+    }
+
+    /**
+     * number of sites in the largest open cluster
+     */
+    public int largestCluster() {
+        return largest;
+    }
+
+    /**
+     * number of open clusters
+     */
+    public int clusterCount() {
+        return clusters;
+    }
+
+    /**
+     * cluster size distribution: entry s is the number of open clusters
+     * with s sites, up to the largest cluster
+     */
+    public int[] clusterSizeHistogram() {
+        return Arrays.copyOf(clustersOfSize, largest + 1);
+    }
+
+    /**
+     * which sites are full, in row-major order: site (i, j) is at
+     * (i - 1) * N + (j - 1)
+     */
+    public boolean[] fullSites() {
+        boolean[] full = new boolean[state.length];
+        for (int s = 0; s < state.length; s++) {
+            full[s] = (state[find(s)] & TOP) != 0;
+        }
+        return full;
     }
 
     /**
@@ -119,5 +322,156 @@ public class Percolation {
         StdOut.println(p.percolates());
         StdOut.println(p.isValidIndices(6, 9));
 //        p.validateIndices(6, 9);
+
+        StdOut.println("\nTest openAll:");
+        Percolation batch = new Percolation(3);
+        int k = batch.openAll(new int[]{1, 2, 1, 3, 3}, new int[]{1, 1, 2, 1, 3});
+        StdOut.println("percolated at: " + k + " should be 3");
+        StdOut.println("isOpen(3, 3): " + batch.isOpen(3, 3) + " should be true");
+        k = batch.openAll(new int[]{2, 3}, new int[]{3, 2});
+        StdOut.println("already percolating, percolated at: " + k + " should be -1");
+        StdOut.println("isOpen(3, 2): " + batch.isOpen(3, 2) + " should be true");
+        batch.reset();
+        k = batch.openAll(new int[]{1, 4, 0, 7});
+        StdOut.println("site ids, percolated at: " + k + " should be 3");
+        batch.reset();
+        try {
+            batch.openAll(new int[]{1, 4}, new int[]{1, 1});
+            StdOut.println("no exception, should throw IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            StdOut.println("isOpen(1, 1) after a bad batch: " + batch.isOpen(1, 1) + " should be false");
+        }
+        try {
+            batch.openAll(new int[]{0, 9});
+            StdOut.println("no exception, should throw IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            StdOut.println("isOpen(1, 1) after a bad batch of ids: " + batch.isOpen(1, 1) + " should be false");
+        }
+        try {
+            batch.openAll(new int[]{1, 2}, new int[]{1});
+            StdOut.println("no exception, should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            StdOut.println("isOpen(1, 1) after mismatched rows and columns: " + batch.isOpen(1, 1)
+                           + " should be false");
+        }
+
+        StdOut.println("\nTest backwash:");
+        Percolation wash = new Percolation(3);
+        for (int i = 1; i <= 3; i++) wash.open(i, 1);
+        wash.open(3, 3);
+        StdOut.println("percolates: " + wash.percolates() + " should be true");
+        StdOut.println("isFull(3, 3), open on the bottom row but not connected to the top: "
+                       + wash.isFull(3, 3) + " should be false");
+        boolean[] full = wash.fullSites();
+        int fullMismatches = 0;
+        for (int i = 1; i <= 3; i++) {
+            for (int j = 1; j <= 3; j++) {
+                if (full[(i - 1) * 3 + (j - 1)] != wash.isFull(i, j)) fullMismatches++;
+            }
+        }
+        StdOut.println("fullSites disagreeing with isFull: " + fullMismatches + " should be 0");
+        StdOut.println("fullSites()[8]: " + full[8] + " should be false");
+        wash.open(3, 2);
+        StdOut.println("isFull(3, 3) once joined to a full site: " + wash.isFull(3, 3) + " should be true");
+        StdOut.println("fullSites()[8]: " + wash.fullSites()[8] + " should be true");
+
+        StdOut.println("\nTest clusters:");
+        Percolation grid = new Percolation(4);
+        grid.open(1, 1);
+        grid.open(1, 2);
+        grid.open(2, 2);
+        grid.open(4, 4);
+        grid.open(3, 4);
+        grid.open(1, 4);
+        StdOut.println("clusterSize(2, 2): " + grid.clusterSize(2, 2) + " should be 3");
+        StdOut.println("clusterSize(4, 4): " + grid.clusterSize(4, 4) + " should be 2");
+        StdOut.println("clusterSize(3, 3), blocked: " + grid.clusterSize(3, 3) + " should be 0");
+        StdOut.println("largestCluster: " + grid.largestCluster() + " should be 3");
+        StdOut.println("clusterCount: " + grid.clusterCount() + " should be 3");
+        StdOut.println("clusterSizeHistogram: " + Arrays.toString(grid.clusterSizeHistogram())
+                       + " should be [0, 1, 1, 1]");
+        grid.open(2, 4);
+        StdOut.println("after joining (1, 4) to (3, 4), clusterSize(4, 4): " + grid.clusterSize(4, 4)
+                       + " should be 4");
+        StdOut.println("largestCluster: " + grid.largestCluster() + " should be 4");
+        StdOut.println("clusterCount: " + grid.clusterCount() + " should be 2");
+        StdOut.println("clusterSizeHistogram: " + Arrays.toString(grid.clusterSizeHistogram())
+                       + " should be [0, 0, 0, 1, 1]");
+        StdOut.println("percolates: " + grid.percolates() + " should be true");
+
+        StdOut.println("\nTest reset:");
+        grid.reset();
+        StdOut.println("isOpen(1, 1): " + grid.isOpen(1, 1) + " should be false");
+        StdOut.println("percolates: " + grid.percolates() + " should be false");
+        StdOut.println("largestCluster: " + grid.largestCluster() + " should be 0");
+        StdOut.println("clusterCount: " + grid.clusterCount() + " should be 0");
+        StdOut.println("clusterSizeHistogram: " + Arrays.toString(grid.clusterSizeHistogram())
+                       + " should be [0]");
+        for (int i = 1; i <= 4; i++) grid.open(i, 3);
+        StdOut.println("after opening column 3, percolates: " + grid.percolates() + " should be true");
+        StdOut.println("isFull(4, 3): " + grid.isFull(4, 3) + " should be true");
+        StdOut.println("clusterSize(2, 3): " + grid.clusterSize(2, 3) + " should be 4");
+
+        StdOut.println("\nTest listener:");
+        final int n = 5;
+        final int[] opened = new int[n * n];
+        final int[] filled = new int[n * n];
+        Percolation feed = new Percolation(n);
+        feed.open(2, 2);
+        feed.open(3, 2);
+        feed.open(1, 4);
+        feed.open(2, 4);
+        boolean[] wasOpen = new boolean[n * n];
+        boolean[] wasFull = feed.fullSites();
+        for (int s = 0; s < n * n; s++) wasOpen[s] = feed.isOpen(s / n + 1, s % n + 1);
+        feed.setListener(new SiteListener() {
+            public void opened(int i, int j) { opened[(i - 1) * n + (j - 1)]++; }
+            public void filled(int i, int j) { filled[(i - 1) * n + (j - 1)]++; }
+        });
+        feed.open(2, 5);
+        StdOut.println("joining a full component, filled(2, 5): " + filled[9] + " should be 1");
+        StdOut.println("filled(2, 4), full before the listener: " + filled[8] + " should be 0");
+        feed.open(1, 2);
+        StdOut.println("filling a half-open component, filled(3, 2): " + filled[11] + " should be 1");
+        feed.open(4, 1);
+        feed.open(4, 3);
+        feed.open(5, 3);
+        feed.open(5, 2);
+        StdOut.println("filled(4, 1) while cut off: " + filled[15] + " should be 0");
+        feed.open(4, 2);
+        StdOut.println("joining three components, filled(4, 1): " + filled[15] + ", filled(5, 3): "
+                       + filled[22] + " should be 1, 1");
+        int reportMismatches = reportMismatches(feed, opened, filled, wasOpen, wasFull);
+        for (int t = 0; t < 3 * n * n; t++) {
+            feed.open(1 + StdRandom.uniform(n), 1 + StdRandom.uniform(n));
+            reportMismatches += reportMismatches(feed, opened, filled, wasOpen, wasFull);
+        }
+        StdOut.println("sites not reported exactly once as they opened and filled: " + reportMismatches
+                       + " should be 0");
+        feed.reset();
+        Arrays.fill(opened, 0);
+        Arrays.fill(filled, 0);
+        Arrays.fill(wasOpen, false);
+        Arrays.fill(wasFull, false);
+        for (int t = 0; t < 3 * n * n; t++) {
+            feed.open(1 + StdRandom.uniform(n), 1 + StdRandom.uniform(n));
+            reportMismatches += reportMismatches(feed, opened, filled, wasOpen, wasFull);
+        }
+        StdOut.println("after reset, sites not reported exactly once: " + reportMismatches + " should be 0");
+    }
+
+    // unit test helper: the sites whose opened or filled reports do not
+    // match one report for each change since the listener was set
+    private static int reportMismatches(Percolation p, int[] opened, int[] filled,
+                                        boolean[] wasOpen, boolean[] wasFull) {
+        int n = p.gridSize;
+        int mismatches = 0;
+        for (int s = 0; s < n * n; s++) {
+            boolean open = p.isOpen(s / n + 1, s % n + 1);
+            boolean full = p.isFull(s / n + 1, s % n + 1);
+            if (opened[s] != (open && !wasOpen[s] ? 1 : 0)) mismatches++;
+            if (filled[s] != (full && !wasFull[s] ? 1 : 0)) mismatches++;
+        }
+        return mismatches;
     }
 }
@@ -0,0 +1,52 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs many PercolationStats jobs in one long-lived process, so that JVM
+ * startup and JIT warmup are paid once. Reads one job per line, "N T" or
+ * "N T seed", from the file given as argument or from standard input, and
+ * writes one CSV line of results per job as soon as it is done. Grids and
+ * buffers are reused between jobs with the same N.
+ */
+public class PercolationBatch {
+    private static final int CACHED_GRIDS = 8;      // grid sizes kept for reuse
+
+    /**
+     * run the jobs
+     */
+    public static void main(String[] args) {
+        In in = args.length > 0 ? new In(args[0]) : new In();
+        Map<Integer, PercolationStats.Experiment> experiments =
+                new LinkedHashMap<Integer, PercolationStats.Experiment>(16, 0.75f, true) {
+                    protected boolean removeEldestEntry(
+                            Map.Entry<Integer, PercolationStats.Experiment> eldest) {
+                        return size() > CACHED_GRIDS;
+                    }
+                };
+        StdOut.println("N,T,seed,mean,stddev,confidenceLo,confidenceHi,micros");
+        while (in.hasNextLine()) {
+            String line = in.readLine().trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("[\\s,]+");
+            try {
+                int N = Integer.parseInt(fields[0]);
+                int T = Integer.parseInt(fields[1]);
+                long seed = fields.length > 2 ? Long.parseLong(fields[2]) : StdRandom.uniform(Integer.MAX_VALUE);
+                if (N <= 0) throw new IllegalArgumentException("Grid size should be bigger than 0");
+                long start = System.nanoTime();
+                PercolationStats.Experiment experiment = experiments.get(N);
+                if (experiment == null) {
+                    experiment = new PercolationStats.Experiment(N, PercolationStats.Sampling.REJECTION,
+                                                                 PercolationStats.Backend.STANDARD);
+                    experiments.put(N, experiment);
+                }
+                PercolationStats ps = new PercolationStats(T, seed, experiment);
+                long micros = (System.nanoTime() - start) / 1000;
+                StdOut.println(N + "," + T + "," + seed + "," + ps.mean() + "," + ps.stddev() + ","
+                        + ps.confidenceLo() + "," + ps.confidenceHi() + "," + micros);
+            } catch (RuntimeException e) {
+                System.err.println("Skipping job \"" + line + "\": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Operations shared by the N-by-N percolation grids, so that
+ * PercolationStats and the visualizers can run on any of them.
+ * Rows and columns are numbered from 1 to N.
+ */
+public interface PercolationModel {
+
+    /**
+     * open site (i, j) if not already open
+     */
+    void open(int i, int j);
+
+    /**
+     * is site (i, j) open?
+     */
+    boolean isOpen(int i, int j);
+
+    /**
+     * is site (i, j) full?
+     */
+    boolean isFull(int i, int j);
+
+    /**
+     * does the system percolate?
+     */
+    boolean percolates();
+
+    /**
+     * blocks all sites again
+     */
+    void reset();
+}
@@ -1,9 +1,53 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  * Created by lu on 2/26/14.
  * Monte carlo simulation to estimate percolation threshold
  */
 public class PercolationStats {
-    private double[] percolationThreshold;  // the percentage of sites opened to percolate
+    private static final int MIN_ADAPTIVE_TRIALS = 30;  // trials before the interval is trusted
+    private static final int ROUND_PER_THREAD = 16;     // adaptive trials per thread between checks
+
+    private long[] percolationStep;         // sites opened to percolate, in ascending order
+    private long sites;                     // number of sites in the grid
+    private int trials;                     // number of experiments run
+    private double mean;                    // running mean of the threshold
+    private double sumOfSquares;            // running sum of squared deviations from the mean
+
+    /**
+     * how an experiment picks the next site to open
+     */
+    public enum Sampling {
+        /** draw uniform sites and skip those already open */
+        REJECTION,
+        /** walk a lazily shuffled permutation of the sites, so every draw opens a site */
+        PERMUTATION
+    }
+
+    /**
+     * which grid implementation the experiments run on
+     */
+    public enum Backend {
+        /** Percolation, a boolean per site */
+        STANDARD {
+            PercolationModel create(int N, File directory) { return new Percolation(N); }
+        },
+        /** CompactPercolation, bit-packed sites for very large grids */
+        COMPACT {
+            PercolationModel create(int N, File directory) { return new CompactPercolation(N); }
+        },
+        /** MappedPercolation, sites in a memory-mapped temporary file in the directory */
+        MAPPED {
+            PercolationModel create(int N, File directory) { return new MappedPercolation(N, directory); }
+        };
+
+        // a grid, with any backing file in the directory, null for java.io.tmpdir
+        abstract PercolationModel create(int N, File directory);
+    }
 
     /**
      * perform T independent computational experiments on an N-by-N grid
@@ -11,23 +55,282 @@ public class PercolationStats {
      * @param T number of experiments
      */
     public PercolationStats(int N, int T) {
+        this(N, T, StdRandom.uniform(Integer.MAX_VALUE), 1);
+    }
+
+    /**
+     * perform T independent computational experiments on an N-by-N grid,
+     * spread over the given number of threads. The results only depend on
+     * the seed, not on the number of threads.
+     * @param N grid size
+     * @param T number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     */
+    public PercolationStats(int N, int T, long seed, int threads) {
+        this(N, T, seed, threads, Sampling.REJECTION);
+    }
+
+    /**
+     * perform T independent computational experiments on an N-by-N grid,
+     * spread over the given number of threads and opening sites in the
+     * order given by the sampling strategy.
+     * @param N grid size
+     * @param T number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     * @param sampling how sites to open are drawn
+     */
+    public PercolationStats(int N, int T, long seed, int threads, Sampling sampling) {
+        this(N, T, seed, threads, sampling, Backend.STANDARD);
+    }
+
+    /**
+     * perform T independent computational experiments on an N-by-N grid
+     * of the given backend, spread over the given number of threads.
+     * @param N grid size
+     * @param T number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     * @param sampling how sites to open are drawn
+     * @param backend grid implementation
+     */
+    public PercolationStats(int N, int T, long seed, int threads,
+                            Sampling sampling, Backend backend) {
+        this(N, T, seed, threads, sampling, backend, null);
+    }
+
+    /**
+     * perform T independent computational experiments on an N-by-N grid
+     * of the given backend, spread over the given number of threads, with
+     * the backing files of MAPPED grids in the directory. The files are
+     * deleted once the experiments are done.
+     * @param N grid size
+     * @param T number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     * @param sampling how sites to open are drawn
+     * @param backend grid implementation
+     * @param directory where MAPPED grids put their files, null for java.io.tmpdir
+     */
+    public PercolationStats(int N, int T, long seed, int threads,
+                            Sampling sampling, Backend backend, File directory) {
         if (N <= 0 || T <= 0) {
             throw new IllegalArgumentException(
                     "Number of tests and grid size should be bigger than 1");
         }
-        percolationThreshold = new double[T];
-        for (int i = 0; i < T; i++) {
-            int opened = 0;
-            Percolation perc = new Percolation(N);
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads should be at least 1");
+        }
+        sites = (long) N * N;
+        percolationStep = new long[T];
+        Experiment[] experiments = experiments(N, threads, T, sampling, backend, directory,
+                                               percolationStep);
+        TrialExecutor executor = new TrialExecutor(experiments);
+        try {
+            executor.run(0, T, seed);
+        } finally {
+            executor.shutdown();
+            close(experiments);
+        }
+        for (int i = 0; i < T; i++) add(percolationStep[i]);
+        Arrays.sort(percolationStep);
+    }
+
+    /**
+     * perform T independent experiments on the calling thread, reusing the
+     * grid and buffers of an experiment left over from earlier runs
+     * @param T number of experiments
+     * @param seed master seed of the experiments
+     * @param experiment the experiment to run
+     */
+    PercolationStats(int T, long seed, Experiment experiment) {
+        if (T <= 0) {
+            throw new IllegalArgumentException("Number of tests should be bigger than 0");
+        }
+        sites = (long) experiment.N * experiment.N;
+        percolationStep = new long[T];
+        experiment.steps = percolationStep;
+        new TrialExecutor(new Experiment[]{experiment}).run(0, T, seed);
+        for (int i = 0; i < T; i++) add(percolationStep[i]);
+        Arrays.sort(percolationStep);
+    }
+
+    /**
+     * perform experiments on an N-by-N grid until the 95% confidence
+     * interval is narrower than 2 * epsilon, or maxTrials have run. Keeps
+     * O(1) state per trial, so percolationProbability is not available.
+     * @param N grid size
+     * @param epsilon target half-width of the confidence interval
+     * @param maxTrials largest number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     */
+    public static PercolationStats adaptive(int N, double epsilon, int maxTrials, long seed, int threads) {
+        return adaptive(N, epsilon, maxTrials, seed, threads, Sampling.REJECTION, Backend.STANDARD, null);
+    }
+
+    /**
+     * perform experiments on an N-by-N grid of the given backend until the
+     * 95% confidence interval is narrower than 2 * epsilon, or maxTrials
+     * have run, with the backing files of MAPPED grids in the directory.
+     * Trials are folded in in order, so the number of trials used only
+     * depends on the seed, not on the number of threads. The files are
+     * deleted once the experiments are done.
+     * @param N grid size
+     * @param epsilon target half-width of the confidence interval
+     * @param maxTrials largest number of experiments
+     * @param seed master seed of the experiments
+     * @param threads number of worker threads
+     * @param sampling how sites to open are drawn
+     * @param backend grid implementation
+     * @param directory where MAPPED grids put their files, null for java.io.tmpdir
+     */
+    public static PercolationStats adaptive(int N, double epsilon, int maxTrials, long seed, int threads,
+                                            Sampling sampling, Backend backend, File directory) {
+        return new PercolationStats(N, epsilon, maxTrials, seed, threads, sampling, backend, directory);
+    }
+
+    // adaptive experiments, behind a factory so that an all-int call cannot
+    // pick them by widening T to epsilon
+    private PercolationStats(int N, double epsilon, int maxTrials, long seed, int threads,
+                             Sampling sampling, Backend backend, File directory) {
+        if (N <= 0 || maxTrials <= 1) {
+            throw new IllegalArgumentException(
+                    "Number of tests and grid size should be bigger than 1");
+        }
+        if (!(epsilon > 0)) {
+            throw new IllegalArgumentException("Interval half-width should be positive");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads should be at least 1");
+        }
+        sites = (long) N * N;
+        long[] round = new long[Math.min(threads * ROUND_PER_THREAD, maxTrials)];
+        Experiment[] experiments = experiments(N, threads, maxTrials, sampling, backend, directory,
+                                               round);
+        TrialExecutor executor = new TrialExecutor(experiments);
+        try {
+            for (int lo = 0; lo < maxTrials && !precise(epsilon); lo += round.length) {
+                int hi = Math.min(lo + round.length, maxTrials);
+                executor.run(lo, hi, seed);
+                for (int trial = lo; trial < hi && !precise(epsilon); trial++) {
+                    add(round[trial - lo]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+            close(experiments);
+        }
+    }
+
+    // one experiment per thread, recording into steps
+    private static Experiment[] experiments(int N, int threads, int T, Sampling sampling,
+                                            Backend backend, File directory, long[] steps) {
+        Experiment[] experiments = new Experiment[Math.min(threads, T)];
+        try {
+            for (int i = 0; i < experiments.length; i++) {
+                experiments[i] = new Experiment(N, sampling, backend, directory);
+                experiments[i].steps = steps;
+            }
+        } catch (RuntimeException e) {
+            close(experiments);               // the grids created before the failure
+            throw e;
+        }
+        return experiments;
+    }
+
+    // releases the grids of the experiments, such as the files of MAPPED grids
+    private static void close(Experiment[] experiments) {
+        for (Experiment experiment : experiments) {
+            if (experiment != null) experiment.close();
+        }
+    }
+
+    // folds in the result of one more trial (Welford's algorithm)
+    private void add(long step) {
+        double threshold = ((double) step) / sites;
+        trials++;
+        double delta = threshold - mean;
+        mean += delta / trials;
+        sumOfSquares += delta * (threshold - mean);
+    }
+
+    // is the confidence interval narrow enough to stop?
+    private boolean precise(double epsilon) {
+        return trials >= MIN_ADAPTIVE_TRIALS && 1.96 * stddev() / Math.sqrt(trials) < epsilon;
+    }
+
+    // runs experiments for one worker thread with its own random stream
+    static class Experiment implements TrialExecutor.Worker {
+        private final int N;                    // grid size
+        private final Sampling sampling;        // how sites are drawn
+        private final PercolationModel perc;    // grid reused across trials
+        private int[] sites;                    // permutation of the sites
+        private long[] steps;                   // where to record the sites opened, by trial
+                                                // modulo its length
+
+        Experiment(int N, Sampling sampling, Backend backend) {
+            this(N, sampling, backend, null);
+        }
+
+        Experiment(int N, Sampling sampling, Backend backend, File directory) {
+            if (sampling == Sampling.PERMUTATION && (long) N * N > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Permutation sampling needs N * N below 2^31");
+            }
+            this.perc = backend.create(N, directory);
+            this.N = N;
+            this.sampling = sampling;
+            if (sampling == Sampling.PERMUTATION) sites = new int[N * N];
+        }
+
+        // releases the grid if it holds more than heap memory
+        void close() {
+            if (!(perc instanceof Closeable)) return;
+            try {
+                ((Closeable) perc).close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not close the grid", e);
+            }
+        }
+
+        public void run(int trial, Random random) {
+            perc.reset();
+            int slot = trial % steps.length;
+            if (sampling == Sampling.PERMUTATION) steps[slot] = openPermutation(random);
+            else                                  steps[slot] = openRejection(random);
+        }
+
+        // draws uniform sites, skipping those already open
+        private long openRejection(Random random) {
+            long opened = 0;
             while (!perc.percolates()) {
-                int row = StdRandom.uniform(1, N + 1);
-                int col = StdRandom.uniform(1, N + 1);
+                int row = 1 + random.nextInt(N);
+                int col = 1 + random.nextInt(N);
                 if (!perc.isOpen(row, col)) {
                     perc.open(row, col);
                     opened++;
                 }
             }
-            percolationThreshold[i] = ((double) opened) / (N * N);
+            return opened;
+        }
+
+        // opens sites in the order of an incremental Fisher-Yates shuffle;
+        // starts from the identity so a trial does not depend on the
+        // trials its worker ran before
+        private int openPermutation(Random random) {
+            int n = sites.length;
+            for (int s = 0; s < n; s++) sites[s] = s;
+            int opened = 0;
+            while (!perc.percolates()) {
+                int r = opened + random.nextInt(n - opened);
+                int site = sites[r];
+                sites[r] = sites[opened];
+                sites[opened] = site;
+                perc.open(site / N + 1, site % N + 1);
+                opened++;
+            }
+            return opened;
         }
     }
 
@@ -35,41 +338,145 @@ public class PercolationStats {
      * sample mean of the percolation threshold
      */
     public double mean() {
-        return StdStats.mean(percolationThreshold);
+        return mean;
     }
 
     /**
      * sample standard deviation of percolation threshold
      */
     public double stddev() {
-        return StdStats.stddev(percolationThreshold);
+        return Math.sqrt(sumOfSquares / (trials - 1));
     }
 
     /**
      * lower bound of the 95% confidence interval
      */
     public double confidenceLo() {
-        return mean() - 1.96 * stddev() / Math.sqrt(percolationThreshold.length);
+        return mean() - 1.96 * stddev() / Math.sqrt(trials);
     }
 
     /**
      * upper bound of the 95% confidence interval
      */
     public double confidenceHi() {
-        return mean() + 1.96 * stddev() / Math.sqrt(percolationThreshold.length);
+        return mean() + 1.96 * stddev() / Math.sqrt(trials);
     }
 
     /**
-     * show results
+     * number of experiments run
+     */
+    public int trials() {
+        return trials;
+    }
+
+    /**
+     * fraction of the experiments in which the grid percolates with a
+     * fraction p of its sites open. Each experiment opens sites in uniformly
+     * random order, so its first p * N * N sites are a random configuration
+     * of density p, and that configuration percolates exactly when it
+     * includes the step at which the experiment percolated.
+     * @param p density of open sites, between 0 and 1
+     * @throws IllegalStateException if the experiments ran in adaptive
+     *         mode, which does not keep the step of each experiment
+     */
+    public double percolationProbability(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Density should be between 0 and 1");
+        }
+        if (percolationStep == null) {
+            throw new IllegalStateException("Steps are not kept in adaptive mode");
+        }
+        long open = Math.round(p * sites);
+        int lo = 0;
+        int hi = percolationStep.length;
+        while (lo < hi) {       // count the steps <= open
+            int mid = (lo + hi) >>> 1;
+            if (percolationStep[mid] <= open) lo = mid + 1;
+            else                              hi = mid;
+        }
+        return ((double) lo) / percolationStep.length;
+    }
+
+    /**
+     * show results, or run the unit tests when given no arguments. The
+     * arguments are N T [threads [seed [sampling [backend [directory]]]]].
+     * A T with a decimal point, such as 0.001, is the half-width epsilon
+     * of the confidence interval instead: trials run until it is reached,
+     * up to a million of them.
      */
     public static void main(String[] args) {
+        if (args.length == 0) {
+            test();
+            return;
+        }
         Stopwatch timer = new Stopwatch();
         int N = Integer.parseInt(args[0]);
-        int T = Integer.parseInt(args[1]);
-        PercolationStats ps = new PercolationStats(N, T);
+        boolean adaptive = args[1].contains(".");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : StdRandom.uniform(Integer.MAX_VALUE);
+        Sampling sampling = args.length > 4 ? Sampling.valueOf(args[4]) : Sampling.REJECTION;
+        Backend backend = args.length > 5 ? Backend.valueOf(args[5]) : Backend.STANDARD;
+        File directory = args.length > 6 ? new File(args[6]) : null;
+        PercolationStats ps;
+        if (adaptive) {
+            double epsilon = Double.parseDouble(args[1]);
+            ps = adaptive(N, epsilon, 1000000, seed, threads, sampling, backend, directory);
+        }
+        else {
+            int T = Integer.parseInt(args[1]);
+            ps = new PercolationStats(N, T, seed, threads, sampling, backend, directory);
+        }
+        StdOut.println("trials\t\t\t\t\t= " + ps.trials());
         StdOut.println("mean\t\t\t\t\t= " + ps.mean());
         StdOut.println("stddev\t\t\t\t\t= " + ps.stddev());
         StdOut.println("95% confidence interval\t= " + ps.confidenceLo() + ", " + ps.confidenceHi());
         StdOut.println("Time elapsed\t\t\t= " + timer.elapsedTime());
     }
+
+    // unit tests: results for a seed do not depend on the number of
+    // threads, the percolation probability rises from 0 to 1, and
+    // adaptive mode stops once the interval is narrow enough
+    private static void test() {
+        StdOut.println("Test thread counts: 200 trials on a 20-by-20 grid, seed 42");
+        for (Sampling sampling : Sampling.values()) {
+            PercolationStats one = new PercolationStats(20, 200, 42L, 1, sampling);
+            boolean same = true;
+            for (int threads : new int[]{3, 8}) {
+                PercolationStats ps = new PercolationStats(20, 200, 42L, threads, sampling);
+                same &= ps.mean() == one.mean() && ps.stddev() == one.stddev();
+            }
+            StdOut.println(sampling + " mean: " + one.mean() + " should be close to 0.59");
+            StdOut.println(sampling + " same mean and stddev with 1, 3 and 8 threads: " + same
+                           + " should be true");
+        }
+
+        StdOut.println("\nTest percolationProbability: 400 trials on a 50-by-50 grid");
+        PercolationStats ps = new PercolationStats(50, 400, 7L, 1);
+        boolean rising = true;
+        for (int k = 1; k <= 100; k++) {
+            rising &= ps.percolationProbability(k / 100.0) >= ps.percolationProbability((k - 1) / 100.0);
+        }
+        StdOut.println("at p = 0: " + ps.percolationProbability(0) + " should be 0.0");
+        StdOut.println("at p = 1: " + ps.percolationProbability(1) + " should be 1.0");
+        StdOut.println("never decreases as p rises: " + rising + " should be true");
+        StdOut.println("at p = 0.593: " + ps.percolationProbability(0.593) + " should be close to 0.5");
+
+        StdOut.println("\nTest adaptive mode: 20-by-20 grid until the half-width is below 0.005");
+        PercolationStats one = adaptive(20, 0.005, 100000, 11L, 1);
+        boolean same = true;
+        for (int threads : new int[]{3, 8}) {
+            PercolationStats a = adaptive(20, 0.005, 100000, 11L, threads);
+            same &= a.trials() == one.trials() && a.mean() == one.mean();
+        }
+        double halfWidth = (one.confidenceHi() - one.confidenceLo()) / 2;
+        StdOut.println("trials: " + one.trials() + ", same trials and mean with 1, 3 and 8 threads: "
+                       + same + " should be true");
+        StdOut.println("half-width below 0.005: " + (halfWidth < 0.005) + " should be true");
+        try {
+            one.percolationProbability(0.5);
+            StdOut.println("percolationProbability: no exception, should throw IllegalStateException");
+        } catch (IllegalStateException e) {
+            StdOut.println("percolationProbability: IllegalStateException thrown as expected");
+        }
+    }
 }
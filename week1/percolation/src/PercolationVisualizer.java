@@ -12,10 +12,12 @@
  *
  *  After each site is opened, it draws full sites in light blue,
  *  open sites (that aren't full) in white, and blocked sites in black,
- *  with with site (1, 1) in the upper left-hand corner.
+ *  with with site (1, 1) in the upper left-hand corner. Only the sites
+ *  that changed are redrawn.
  *
  ****************************************************************************/
 
+import java.awt.Color;
 import java.awt.Font;
 
 public class PercolationVisualizer {
@@ -24,7 +26,7 @@ public class PercolationVisualizer {
     private static final int DELAY = 10;
 
     // draw N-by-N percolation system
-    public static void draw(Percolation perc, int N) {
+    public static void draw(PercolationModel perc, int N) {
         StdDraw.clear();
         StdDraw.setPenColor(StdDraw.BLACK);
         StdDraw.setXscale(0, N);
@@ -36,26 +38,61 @@ public class PercolationVisualizer {
         for (int row = 1; row <= N; row++) {
             for (int col = 1; col <= N; col++) {
                 if (perc.isFull(row, col)) {
-                    StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
+                    drawSite(StdDraw.BOOK_LIGHT_BLUE, row, col, N);
                     opened++;
                 }
                 else if (perc.isOpen(row, col)) {
-                    StdDraw.setPenColor(StdDraw.WHITE);
+                    drawSite(StdDraw.WHITE, row, col, N);
                     opened++;
                 }
                 else
-                    StdDraw.setPenColor(StdDraw.BLACK);
-                StdDraw.filledSquare(col - 0.5, N - row + 0.5, 0.45);
+                    drawSite(StdDraw.BLACK, row, col, N);
             }
         }
 
-        // write status text
+        drawStatus(perc, N, opened);
+    }
+
+    // draw site (row, col) in the given color
+    private static void drawSite(Color color, int row, int col, int N) {
+        StdDraw.setPenColor(color);
+        StdDraw.filledSquare(col - 0.5, N - row + 0.5, 0.45);
+    }
+
+    // write status text over the previous one
+    private static void drawStatus(PercolationModel perc, int N, int opened) {
+        StdDraw.setPenColor(StdDraw.WHITE);
+        StdDraw.filledRectangle(N/2.0, -N*.025, N/2.0, N*.025);
         StdDraw.setFont(new Font("SansSerif", Font.PLAIN, 12));
         StdDraw.setPenColor(StdDraw.BLACK);
         StdDraw.text(.25*N, -N*.025, opened + " open sites");
         if (perc.percolates()) StdDraw.text(.75*N, -N*.025, "percolates");
         else                   StdDraw.text(.75*N, -N*.025, "does not percolate");
+    }
+
+    // redraws only the sites a Percolation reports as changed
+    public static class Repainter implements Percolation.SiteListener {
+        private final int N;          // grid size
+        private int opened;           // number of open sites
 
+        // starts from a fully drawn grid with no open sites
+        public Repainter(int N) {
+            this.N = N;
+        }
+
+        public void opened(int i, int j) {
+            opened++;
+            drawSite(StdDraw.WHITE, i, j, N);
+        }
+
+        public void filled(int i, int j) {
+            drawSite(StdDraw.BOOK_LIGHT_BLUE, i, j, N);
+        }
+
+        // write status text for the current grid
+        public void drawStatus(PercolationModel perc) {
+            PercolationVisualizer.drawStatus(perc, N, opened);
+        }
     }
 
     public static void main(String[] args) {
@@ -65,15 +102,17 @@ public class PercolationVisualizer {
         // turn on animation mode
         StdDraw.show(0);
 
-        // repeatedly read in sites to open and draw resulting system
+        // repeatedly read in sites to open and draw what changed
         Percolation perc = new Percolation(N);
         draw(perc, N);
+        Repainter repainter = new Repainter(N);
+        perc.setListener(repainter);
         StdDraw.show(DELAY);
         while (!in.isEmpty()) {
             int i = in.readInt();
             int j = in.readInt();
             perc.open(i, j);
-            draw(perc, N);
+            repainter.drawStatus(perc);
             StdDraw.show(DELAY);
         }
     }
@@ -0,0 +1,251 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Undirected graph held in primitive arrays: an edge list, and the
+ * adjacency lists in compressed sparse row (CSR) form, built the first
+ * time they are needed. Vertices are numbered from 0 to V - 1.
+ */
+public class SparseGraph {
+    private int vertices;                 // number of vertices
+    private int edges;                    // number of edges
+    private int[] edgeFrom;               // one endpoint of each edge
+    private int[] edgeTo;                 // the other endpoint of each edge
+    private int[] offsets;                // neighbors of v are adjacent[offsets[v] .. offsets[v + 1])
+    private int[] adjacent;               // concatenated adjacency lists
+
+    /**
+     * Initializes a graph from its edges; edgeFrom[e] and edgeTo[e] are the
+     * endpoints of edge e. The arrays are used as they are, not copied.
+     * @param V number of vertices
+     * @param edgeFrom one endpoint of each edge
+     * @param edgeTo the other endpoint of each edge
+     */
+    public SparseGraph(int V, int[] edgeFrom, int[] edgeTo) {
+        if (V < 0) throw new IllegalArgumentException("Number of vertices should be non-negative");
+        if (edgeFrom.length != edgeTo.length) {
+            throw new IllegalArgumentException("Edge endpoints should have the same length");
+        }
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (edgeFrom[e] < 0 || edgeFrom[e] >= V || edgeTo[e] < 0 || edgeTo[e] >= V) {
+                throw new IndexOutOfBoundsException("Vertex of edge " + e + " out of bounds");
+            }
+        }
+        vertices = V;
+        edges = edgeFrom.length;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+    }
+
+    /**
+     * Reads a graph from an edge-list file: a "v w" pair of vertex ids per
+     * line, separated by blanks. Columns after the first two, such as edge
+     * weights, are ignored. Lines whose first non-blank character is # or %
+     * are comments. The number of vertices is one more than the largest id,
+     * and self-loops are dropped, though their vertex still counts.
+     */
+    public static SparseGraph fromEdgeList(String filename) {
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        int E = 0;
+        int V = 0;
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(filename), 1 << 16);
+            try {
+                int[] pair = new int[2];
+                int line = 1;
+                int c = in.read();
+                while (c != -1) {
+                    while (isBlank(c)) c = in.read();
+                    if (c == '#' || c == '%') {
+                        while (c != -1 && c != '\n') c = in.read();
+                    }
+                    int n = 0;
+                    while (c != -1 && c != '\n') {          // the ids on this line
+                        if (isBlank(c)) {
+                            c = in.read();
+                            continue;
+                        }
+                        if (n == 2) {                       // ignore the other columns
+                            while (c != -1 && c != '\n') c = in.read();
+                            break;
+                        }
+                        long id = 0;
+                        while (c >= '0' && c <= '9') {
+                            id = 10 * id + (c - '0');
+                            if (id >= Integer.MAX_VALUE) {
+                                throw new IllegalArgumentException("Vertex id too large on line " + line
+                                                                   + " of " + filename);
+                            }
+                            c = in.read();
+                        }
+                        if (c != -1 && c != '\n' && !isBlank(c)) {
+                            throw new IllegalArgumentException("Unexpected character '" + (char) c
+                                                               + "' in vertex id on line " + line
+                                                               + " of " + filename);
+                        }
+                        pair[n++] = (int) id;
+                    }
+                    c = in.read();
+                    line++;
+                    if (n == 0) continue;
+                    if (n != 2) {
+                        throw new IllegalArgumentException("Expected an edge on line " + (line - 1)
+                                                           + " of " + filename);
+                    }
+                    V = Math.max(V, Math.max(pair[0], pair[1]) + 1);
+                    if (pair[0] == pair[1]) continue;
+                    if (E == from.length) {
+                        from = Arrays.copyOf(from, 2 * E);
+                        to = Arrays.copyOf(to, 2 * E);
+                    }
+                    from[E] = pair[0];
+                    to[E] = pair[1];
+                    E++;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read " + filename, e);
+        }
+        return new SparseGraph(V, Arrays.copyOf(from, E), Arrays.copyOf(to, E));
+    }
+
+    // separator between the columns of a line
+    private static boolean isBlank(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * number of vertices
+     */
+    public int V() {
+        return vertices;
+    }
+
+    /**
+     * number of edges
+     */
+    public int E() {
+        return edges;
+    }
+
+    /**
+     * one endpoint of edge e
+     */
+    public int from(int e) {
+        return edgeFrom[e];
+    }
+
+    /**
+     * the other endpoint of edge e
+     */
+    public int to(int e) {
+        return edgeTo[e];
+    }
+
+    /**
+     * offsets into the adjacency array: the neighbors of v are
+     * adjacent()[offsets()[v]] to adjacent()[offsets()[v + 1] - 1].
+     * Shared with the graph, not to be modified.
+     */
+    int[] offsets() {
+        buildAdjacency();
+        return offsets;
+    }
+
+    /**
+     * concatenated adjacency lists, every edge appearing at both endpoints.
+     * Shared with the graph, not to be modified.
+     */
+    int[] adjacent() {
+        buildAdjacency();
+        return adjacent;
+    }
+
+    // counting sort of the edges by endpoint
+    private synchronized void buildAdjacency() {
+        if (adjacent != null) return;
+        if (2L * edges > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many edges for adjacency lists");
+        }
+        int[] start = new int[vertices + 1];
+        for (int e = 0; e < edges; e++) {
+            start[edgeFrom[e] + 1]++;
+            start[edgeTo[e] + 1]++;
+        }
+        for (int v = 0; v < vertices; v++) start[v + 1] += start[v];
+        int[] lists = new int[2 * edges];
+        int[] fill = Arrays.copyOf(start, vertices);
+        for (int e = 0; e < edges; e++) {
+            lists[fill[edgeFrom[e]]++] = edgeTo[e];
+            lists[fill[edgeTo[e]]++] = edgeFrom[e];
+        }
+        offsets = start;
+        adjacent = lists;
+    }
+
+    // writes the text to a temporary edge-list file
+    private static String edgeFile(String text) throws IOException {
+        File file = File.createTempFile("edges", ".txt");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+        return file.getPath();
+    }
+
+    // the message of the error reading the text as an edge list, or null
+    private static String error(String text) throws IOException {
+        try {
+            fromEdgeList(edgeFile(text));
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Unit test: edge lists with comments, extra columns and errors
+     */
+    public static void main(String[] args) throws IOException {
+        SparseGraph g = fromEdgeList(edgeFile("# comment\n  # indented comment\n%%MatrixMarket\n"
+                                              + "0 1\r\n1 2 0.5\n\n\t2 3  weight -4.2\n7 7\n"));
+        StdOut.println("V: " + g.V() + " should be 8");
+        StdOut.println("E: " + g.E() + " should be 3");
+        StdOut.println("edge 2: " + g.from(2) + "-" + g.to(2) + " should be 2-3");
+        int[] offsets = g.offsets();
+        StdOut.println("degree of 1: " + (offsets[2] - offsets[1]) + " should be 2");
+        StdOut.println("degree of 7, only a self-loop: " + (offsets[8] - offsets[7]) + " should be 0");
+
+        StdOut.println("\nTest errors:");
+        StdOut.println("-1 5: " + error("-1 5\n"));
+        StdOut.println("should be Unexpected character '-' in vertex id on line 1 of ...");
+        StdOut.println("0 1 / a3 b4: " + error("0 1\na3 b4\n"));
+        StdOut.println("should be Unexpected character 'a' in vertex id on line 2 of ...");
+        StdOut.println("3x 4: " + error("3x 4\n"));
+        StdOut.println("should be Unexpected character 'x' in vertex id on line 1 of ...");
+        StdOut.println("0 1 / 2: " + error("0 1\n2\n"));
+        StdOut.println("should be Expected an edge on line 2 of ...");
+        StdOut.println("0 2147483647: " + error("0 2147483647\n"));
+        StdOut.println("should be Vertex id too large on line 1 of ...");
+        try {
+            fromEdgeList(new File(System.getProperty("java.io.tmpdir"), "no-such-edges.txt").getPath());
+            StdOut.println("no exception, should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            StdOut.println("missing file: " + e.getMessage());
+            StdOut.println("should be Could not read ...");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent Monte Carlo trials on a fixed pool of worker threads.
+ *
+ * Every trial gets its own random stream derived from the master seed and
+ * the trial index, so the outcome of a trial does not depend on which
+ * worker runs it or on how many workers there are.
+ */
+class TrialExecutor {
+    private final Worker[] workers;       // one worker per thread
+    private ExecutorService pool;         // created on first parallel run
+
+    /**
+     * a worker owns its scratch state and is only used by one thread at a time
+     */
+    interface Worker {
+        void run(int trial, Random random);
+    }
+
+    /**
+     * Initializes an executor running one thread per worker.
+     * @param workers the workers, at least one
+     */
+    TrialExecutor(Worker[] workers) {
+        if (workers.length == 0) {
+            throw new IllegalArgumentException("Number of workers should be at least 1");
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * seed of the random stream of the given trial (splitmix64 finalizer)
+     */
+    static long trialSeed(long seed, int trial) {
+        long z = seed + (trial + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * runs trials lo (inclusive) to hi (exclusive) and waits for all of them
+     */
+    void run(final int lo, final int hi, final long seed) {
+        final AtomicInteger next = new AtomicInteger(lo);
+        int threads = Math.min(workers.length, hi - lo);
+        if (threads <= 1) {
+            runWorker(workers[0], next, hi, seed);
+            return;
+        }
+        if (pool == null) pool = Executors.newFixedThreadPool(workers.length);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int w = 0; w < threads; w++) {
+            final Worker worker = workers[w];
+            futures.add(pool.submit(new Runnable() {
+                public void run() {
+                    runWorker(worker, next, hi, seed);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running trials", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * stops the worker threads, if any were started
+     */
+    void shutdown() {
+        if (pool != null) pool.shutdownNow();
+        pool = null;
+    }
+
+    // pulls trial indices until there are none left
+    private static void runWorker(Worker worker, AtomicInteger next, int hi, long seed) {
+        Random random = new Random();
+        for (int trial = next.getAndIncrement(); trial < hi; trial = next.getAndIncrement()) {
+            random.setSeed(trialSeed(seed, trial));
+            worker.run(trial, random);
+        }
+    }
+}
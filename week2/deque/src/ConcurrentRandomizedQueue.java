@@ -0,0 +1,185 @@
+/**
+ * Thread-safe randomized queue. Items are striped over shards, each a
+ * small randomized queue behind its own lock, so that threads working on
+ * different shards do not contend. Every shard draws from the calling
+ * thread's ThreadLocalRandom.
+ *
+ * An item goes to the smaller of two random shards, and is taken from the
+ * larger of two random shards, which keeps the shards balanced and the
+ * dequeued item close to uniform over the whole queue. When the chosen
+ * shard is empty, dequeue steals from the others.
+ *
+ */
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ConcurrentRandomizedQueue<Item> {
+    private final Shard<Item>[] shards;     // the shards holding the items
+
+    // randomized queue guarded by its own lock
+    private static class Shard<Item> {
+        private Item[] queue = (Item[]) new Object[2];
+        private volatile int N;             // read without the lock for size and balancing
+
+        synchronized void enqueue(Item item) {
+            if (N == queue.length) resize(2 * N);
+            queue[N] = item;
+            N++;
+        }
+
+        // a random item, or null if the shard is empty
+        synchronized Item dequeue(ThreadLocalRandom random) {
+            if (N == 0) return null;
+            int randIndex = random.nextInt(N);
+            Item item = queue[randIndex];
+            queue[randIndex] = queue[N - 1];
+            queue[N - 1] = null;            // avoid loitering
+            N--;
+            if (N > 0 && N == queue.length / 4) resize(queue.length / 2);
+            return item;
+        }
+
+        // a random item left in place, or null if the shard is empty
+        synchronized Item sample(ThreadLocalRandom random) {
+            if (N == 0) return null;
+            return queue[random.nextInt(N)];
+        }
+
+        private void resize(int capacity) {
+            Item[] temp = (Item[]) new Object[capacity];
+            for (int i = 0; i < N; i++) { temp[i] = queue[i]; }
+            queue = temp;
+        }
+    }
+
+    /**
+     * Constructs an empty randomized queue with a shard per core
+     */
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty randomized queue with the given number of shards
+     */
+    public ConcurrentRandomizedQueue(int shardCount) {
+        if (shardCount <= 0) throw new IllegalArgumentException("Number of shards should be at least 1");
+        shards = (Shard<Item>[]) new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) shards[i] = new Shard<Item>();
+    }
+
+    /**
+     * Is the queue empty? Only a snapshot while other threads change it.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of items on the queue. Only a snapshot while other
+     * threads change it.
+     */
+    public int size() {
+        int n = 0;
+        for (Shard<Item> shard : shards) n += shard.N;
+        return n;
+    }
+
+    // the larger or smaller of two random shards
+    private Shard<Item> pick(ThreadLocalRandom random, boolean larger) {
+        Shard<Item> a = shards[random.nextInt(shards.length)];
+        Shard<Item> b = shards[random.nextInt(shards.length)];
+        return (a.N >= b.N) == larger ? a : b;
+    }
+
+    /**
+     * Adds the item
+     */
+    public void enqueue(Item item) {
+        if (item == null) throw new NullPointerException();
+        pick(ThreadLocalRandom.current(), false).enqueue(item);
+    }
+
+    /**
+     * Deletes and returns a random item
+     */
+    public Item dequeue() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Item item = pick(random, true).dequeue(random);
+        if (item != null) return item;
+        int start = random.nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {     // steal from the other shards
+            item = shards[(start + i) % shards.length].dequeue(random);
+            if (item != null) return item;
+        }
+        throw new NoSuchElementException("Queue underflow");
+    }
+
+    /**
+     * Returns (but does not delete) a random item
+     */
+    public Item sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Item item = pick(random, true).sample(random);
+        if (item != null) return item;
+        int start = random.nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            item = shards[(start + i) % shards.length].sample(random);
+            if (item != null) return item;
+        }
+        throw new NoSuchElementException("Queue underflow");
+    }
+
+    /**
+     * Unit test: 4 producers and 4 consumers share 1,000,000 items
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int n = 1000000;
+        final int producers = 4;
+        final ConcurrentRandomizedQueue<Integer> rq = new ConcurrentRandomizedQueue<Integer>();
+        final boolean[] taken = new boolean[n];
+        final AtomicInteger count = new AtomicInteger();
+        Thread[] threads = new Thread[2 * producers];
+        for (int k = 0; k < producers; k++) {
+            final int first = k;
+            threads[k] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = first; i < n; i += producers) rq.enqueue(i);
+                }
+            });
+            threads[producers + k] = new Thread(new Runnable() {
+                public void run() {
+                    while (count.get() < n) {
+                        try {
+                            int item = rq.dequeue();
+                            synchronized (taken) { taken[item] = true; }
+                            count.incrementAndGet();
+                        } catch (NoSuchElementException e) {
+                            Thread.yield();             // producers are behind
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        int missing = 0;
+        for (boolean t : taken) if (!t) missing++;
+        StdOut.println("taken: " + count.get() + " should be " + n);
+        StdOut.println("missing: " + missing + " should be 0");
+        StdOut.println("isEmpty?: " + rq.isEmpty() + " should be true");
+
+        StdOut.println("\nTest uniformity: dequeue counts of 0 to 9 over 100000 runs");
+        int[] first = new int[10];
+        for (int t = 0; t < 100000; t++) {
+            for (int i = 0; i < 10; i++) rq.enqueue(i);
+            first[rq.dequeue()]++;
+            while (!rq.isEmpty()) rq.dequeue();
+        }
+        for (int c : first) StdOut.print(c + " ");
+        StdOut.println("\n(each should be close to 10000)");
+    }
+}
@@ -5,20 +5,38 @@
  *
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 
 public class Deque<Item> implements Iterable<Item> {
     private int N;              // size of the deque
     private Node<Item> head;    // head sentinel before first item
     private Node<Item> tail;    // tail sentinel after last item
+    private int modCount;       // number of changes, to detect them while iterating
 
-    // helper doubly linked list class
-    private static class Node<Item> {
+    // helper doubly linked list class; next is volatile so that a reader
+    // thread sees fully built nodes, and a removed node keeps its next
+    // link so that a reader standing on it still reaches the tail
+    private static final class Node<Item> {
         private Item item;
         private Node<Item> prev;
-        private Node<Item> next;
+        private volatile Node<Item> next;
+    }
+
+    private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    // sets node.next with a release store rather than a full volatile
+    // write: a reader still sees the node built, without the fence
+    private static <Item> void setNext(Node<Item> node, Node<Item> next) {
+        NEXT.lazySet(node, next);
     }
 
     /**
@@ -27,7 +45,7 @@ public class Deque<Item> implements Iterable<Item> {
     public Deque() {
         head = new Node<Item>();
         tail = new Node<Item>();
-        head.next = tail;
+        setNext(head, tail);
         tail.prev = head;
         N = 0;
     }
@@ -56,10 +74,11 @@ public class Deque<Item> implements Iterable<Item> {
         Node<Item> first = new Node<Item>();
         first.item = item;
         first.prev = head;
-        first.next = oldFirst;
+        setNext(first, oldFirst);
         oldFirst.prev = first;
-        head.next = first;
+        setNext(head, first);
         N++;
+        modCount++;
     }
 
     /**
@@ -71,10 +90,11 @@ public class Deque<Item> implements Iterable<Item> {
          Node<Item> last = new Node<Item>();
          last.item = item;
          last.prev = oldLast;
-         last.next = tail;
-         oldLast.next = last;
+         setNext(last, tail);
+         setNext(oldLast, last);
          tail.prev = last;
          N++;
+         modCount++;
      }
 
     /**
@@ -83,9 +103,10 @@ public class Deque<Item> implements Iterable<Item> {
     public Item removeFirst() {
         if (isEmpty()) throw new NoSuchElementException("Deque underflow");
         Item item = head.next.item;
-        head.next = head.next.next;
+        setNext(head, head.next.next);
         head.next.prev = head;
         N--;
+        modCount++;
         return item;
     }
 
@@ -96,34 +117,162 @@ public class Deque<Item> implements Iterable<Item> {
         if (isEmpty()) throw new NoSuchElementException("Deque underflow");
         Item item = tail.prev.item;
         tail.prev = tail.prev.prev;
-        tail.prev.next = tail;
+        setNext(tail.prev, tail);
         N--;
+        modCount++;
         return item;
     }
 
     /**
-     * Returns an iterator over items in order from front to end.
+     * Inserts the items at the front, as if by addFirst on each in turn,
+     * so the last item ends up first. Nothing is inserted if an item is null.
+     */
+    public void addAllFirst(Iterable<? extends Item> items) {
+        Node<Item> first = null;
+        Node<Item> last = null;
+        int count = 0;
+        for (Item item : items) {       // build the chain back to front
+            if (item == null) { throw new NullPointerException(); }
+            Node<Item> node = new Node<Item>();
+            node.item = item;
+            setNext(node, first);
+            if (first == null) last = node;
+            else               first.prev = node;
+            first = node;
+            count++;
+        }
+        if (count == 0) return;
+        Node<Item> oldFirst = head.next;
+        setNext(last, oldFirst);
+        oldFirst.prev = last;
+        first.prev = head;
+        setNext(head, first);
+        N += count;
+        modCount++;
+    }
+
+    /**
+     * Inserts the items at the end, in order. Nothing is inserted if an
+     * item is null.
+     */
+    public void addAllLast(Item[] items) {
+        if (items.length == 0) return;
+        Node<Item> first = null;
+        Node<Item> last = null;
+        for (Item item : items) {       // build the chain front to back
+            if (item == null) { throw new NullPointerException(); }
+            Node<Item> node = new Node<Item>();
+            node.item = item;
+            node.prev = last;
+            if (last == null) first = node;
+            else              setNext(last, node);
+            last = node;
+        }
+        Node<Item> oldLast = tail.prev;
+        setNext(last, tail);
+        first.prev = oldLast;
+        setNext(oldLast, first);
+        tail.prev = last;
+        N += items.length;
+        modCount++;
+    }
+
+    /**
+     * Deletes up to max items from the front and adds them to the
+     * collection in order.
+     * @return the number of items moved
+     */
+    public int drainTo(Collection<? super Item> collection, int max) {
+        if (max < 0) throw new IllegalArgumentException("Maximum should be non-negative");
+        Node<Item> current = head.next;
+        int count = 0;
+        try {
+            for (; count < max && current != tail; count++) {
+                collection.add(current.item);
+                current = current.next;
+            }
+        } finally {
+            unlinkFirst(current, count);    // the items added, even if add threw
+        }
+        return count;
+    }
+
+    /**
+     * Deletes up to k items from the front into out[0], out[1], ...
+     * @return the number of items deleted
+     */
+    public int removeFirst(int k, Item[] out) {
+        if (k < 0 || k > out.length) {
+            throw new IllegalArgumentException("Count should be between 0 and the output length");
+        }
+        Node<Item> current = head.next;
+        int count = 0;
+        for (; count < k && current != tail; count++) {
+            out[count] = current.item;
+            current = current.next;
+        }
+        unlinkFirst(current, count);
+        return count;
+    }
+
+    // unlinks the count nodes before newFirst in one step
+    private void unlinkFirst(Node<Item> newFirst, int count) {
+        if (count == 0) return;
+        newFirst.prev = head;
+        setNext(head, newFirst);
+        N -= count;
+        modCount++;
+    }
+
+    /**
+     * Returns an iterator over items in order from front to end. The
+     * iterator fails fast: it throws ConcurrentModificationException once
+     * the deque has been changed other than through it.
      */
     public Iterator<Item> iterator() {
-        return new ListIterator<Item>(head.next);
+        return new ListIterator();
+    }
+
+    /**
+     * Returns a weakly consistent iterator over items in order from front
+     * to end, for a reader running alongside a single writer thread. It
+     * never throws ConcurrentModificationException and never blocks the
+     * writer; it returns each item present when it was created that is
+     * not removed while it runs, and may or may not reflect changes made
+     * after it was created.
+     */
+    public Iterator<Item> snapshotIterator() {
+        return new SnapshotIterator();
     }
 
-    // an iterator
-    private class ListIterator<Item> implements Iterator<Item> {
-        private Node<Item> current;
-        private int counter = 0;
+    // a fail-fast iterator
+    private class ListIterator implements Iterator<Item> {
+        private Node<Item> current = head.next;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() { return current != tail; }
+        public void remove() { throw new UnsupportedOperationException(); }
 
-        public ListIterator(Node<Item> first) {
-            current = first;
+        public Item next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            Item item = current.item;
+            current = current.next;
+            return item;
         }
-        public boolean hasNext() { return counter < N; }
+    }
+
+    // a weakly consistent iterator following the volatile next links
+    private class SnapshotIterator implements Iterator<Item> {
+        private Node<Item> current = head.next;
+
+        public boolean hasNext() { return current != tail; }
         public void remove() { throw new UnsupportedOperationException(); }
 
         public Item next() {
             if (!hasNext()) throw new NoSuchElementException();
             Item item = current.item;
             current = current.next;
-            counter++;
             return item;
         }
     }
@@ -197,5 +346,38 @@ public class Deque<Item> implements Iterable<Item> {
         StdOut.println("Below should be 9 to 0:");
         for (int i = 0; i < 10; i++) { StdOut.print(intDeque.removeLast() + " "); }
         StdOut.println("");
+
+        StdOut.println("\nTest fail-fast iterator:");
+        for (int i = 0; i < 3; i++) { intDeque.addLast(i); }
+        try {
+            for (int i : intDeque) { intDeque.addLast(i); }
+            StdOut.println("no exception, should have thrown");
+        }
+        catch (ConcurrentModificationException e) {
+            StdOut.println("ConcurrentModificationException thrown as expected");
+        }
+
+        StdOut.println("\nTest snapshot iterator:");
+        Iterator<Integer> snapshot = intDeque.snapshotIterator();
+        intDeque.removeFirst();
+        intDeque.addLast(9);
+        StdOut.println("Below should be 0 1 2 0 9 (removed 0 was already reached):");
+        while (snapshot.hasNext()) { StdOut.print(snapshot.next() + " "); }
+        StdOut.println("");
+
+        StdOut.println("\nTest bulk operations:");
+        Deque<Integer> bulk = new Deque<Integer>();
+        bulk.addAllLast(new Integer[]{3, 4, 5});
+        bulk.addAllFirst(Arrays.asList(2, 1, 0));
+        StdOut.println("size: " + bulk.size() + " should be size 6");
+        Integer[] out = new Integer[4];
+        StdOut.println("removed: " + bulk.removeFirst(2, out) + " should be 2");
+        StdOut.println("Below should be 0 1:");
+        StdOut.println(out[0] + " " + out[1]);
+        List<Integer> drained = new ArrayList<Integer>();
+        StdOut.println("drained: " + bulk.drainTo(drained, 10) + " should be 4");
+        StdOut.println("Below should be [2, 3, 4, 5]:");
+        StdOut.println(drained);
+        StdOut.println("isEmpty?: " + bulk.isEmpty() + " should be true");
     }
 }
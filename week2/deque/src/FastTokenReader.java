@@ -0,0 +1,162 @@
+/**
+ * Reads whitespace-separated tokens from a file channel, much faster than
+ * StdIn. The bytes are scanned by hand in a direct buffer, and each token
+ * is returned as a CharSequence view over that buffer, so reading a token
+ * allocates nothing; call toString() on the tokens worth keeping.
+ *
+ * The view is valid until the next call to hasNext() or next(). Its chars
+ * are the bytes of the token, which is right for ASCII; toString() decodes
+ * them as UTF-8.
+ *
+ */
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+
+public class FastTokenReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;      // where the bytes come from
+    private ByteBuffer buffer;              // bytes read, grown for tokens longer than it
+    private int pos;                        // index of the next byte to scan
+    private int limit;                      // index after the last byte read
+    private boolean eof;                    // if the channel is exhausted
+    private final Token token = new Token();
+
+    // the last token read, as a view over the buffer
+    private class Token implements CharSequence {
+        private int start;
+        private int end;
+
+        public int length() { return end - start; }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) throw new IndexOutOfBoundsException("Index out of bounds");
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        public String toString() {
+            byte[] bytes = new byte[length()];
+            ByteBuffer view = buffer.duplicate();
+            view.limit(end).position(start);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Initializes a reader of the tokens on the channel
+     */
+    public FastTokenReader(FileChannel channel) {
+        if (channel == null) throw new NullPointerException();
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Initializes a reader of the tokens on standard input
+     */
+    public static FastTokenReader stdin() {
+        return new FastTokenReader(new FileInputStream(FileDescriptor.in).getChannel());
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    // move the bytes from index keep on to the front of the buffer, growing
+    // it if they fill it, and read more after them; false if nothing was read
+    private boolean fill(int keep) {
+        if (eof) return false;
+        if (keep == 0 && limit == buffer.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(2 * buffer.capacity());
+            buffer.limit(limit).position(0);
+            bigger.put(buffer);
+            buffer = bigger;
+        } else {
+            buffer.limit(limit).position(keep);
+            buffer.compact();
+        }
+        try {
+            int n;
+            do { n = channel.read(buffer); } while (n == 0);
+            if (n < 0) eof = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read tokens", e);
+        }
+        limit = buffer.position();
+        pos -= keep;
+        return !eof;
+    }
+
+    /**
+     * Is there another token? Invalidates the last token returned.
+     */
+    public boolean hasNext() {
+        while (true) {
+            while (pos < limit && isSpace(buffer.get(pos))) pos++;
+            if (pos < limit) return true;
+            if (!fill(pos)) return false;
+        }
+    }
+
+    /**
+     * Returns the next token, as a view that is only valid until the next
+     * call to hasNext() or next()
+     */
+    public CharSequence next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int i = pos;
+        while (true) {
+            while (i < limit && !isSpace(buffer.get(i))) i++;
+            if (i < limit) break;
+            int start = pos;
+            boolean more = fill(pos);
+            i -= start - pos;               // the bytes moved to the front
+            if (!more) break;
+        }
+        token.start = pos;
+        token.end = i;
+        pos = i;
+        return token;
+    }
+
+    /**
+     * Closes the channel
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Unit test: counts the tokens on standard input
+     */
+    public static void main(String[] args) {
+        Stopwatch timer = new Stopwatch();
+        FastTokenReader in = FastTokenReader.stdin();
+        long tokens = 0;
+        long chars = 0;
+        String longest = "";
+        while (in.hasNext()) {
+            CharSequence token = in.next();
+            tokens++;
+            chars += token.length();
+            if (token.length() > longest.length()) longest = token.toString();
+        }
+        StdOut.println("tokens: " + tokens);
+        StdOut.println("chars: " + chars);
+        StdOut.println("longest: " + longest.length());
+        StdOut.println("Time elapsed: " + timer.elapsedTime());
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Deque of int values in a circular array whose capacity is a power of
+ * two, like RingDeque but without boxing.
+ *
+ */
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+
+public class IntDeque implements Iterable<Integer> {
+    private static final int MIN_CAPACITY = 8;
+
+    private int N;              // size of the deque
+    private int[] items;        // circular array of items
+    private int first;          // index of the first item
+    private int modCount;       // number of changes, to detect them while iterating
+
+    /**
+     * Initializes an empty deque.
+     */
+    public IntDeque() {
+        items = new int[MIN_CAPACITY];
+    }
+
+    /**
+     * Is the deque empty?
+     */
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    /**
+     * Returns the size of the deque.
+     */
+    public int size() {
+        return N;
+    }
+
+    // resize the underlying array, moving the first item to index 0
+    private void resize(int capacity) {
+        assert capacity >= N && Integer.bitCount(capacity) == 1;
+        int[] temp = new int[capacity];
+        int mask = items.length - 1;
+        for (int i = 0; i < N; i++) { temp[i] = items[(first + i) & mask]; }
+        items = temp;
+        first = 0;
+    }
+
+    // shrink when a quarter full
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && N == items.length / 4) resize(items.length / 2);
+    }
+
+    /**
+     * Inserts the item at the front.
+     */
+    public void addFirst(int item) {
+        if (N == items.length) resize(2 * N);
+        first = (first - 1) & (items.length - 1);
+        items[first] = item;
+        N++;
+        modCount++;
+    }
+
+    /**
+     * Inserts the item at the end.
+     */
+    public void addLast(int item) {
+        if (N == items.length) resize(2 * N);
+        items[(first + N) & (items.length - 1)] = item;
+        N++;
+        modCount++;
+    }
+
+    /**
+     * Deletes and return the item at the front.
+     */
+    public int removeFirst() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        int item = items[first];
+        first = (first + 1) & (items.length - 1);
+        N--;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    /**
+     * Deletes and return the item at the end.
+     */
+    public int removeLast() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        int item = items[(first + N - 1) & (items.length - 1)];
+        N--;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    /**
+     * Returns an iterator over items in order from front to end. Use
+     * nextInt() to read items without boxing. The iterator fails fast: it
+     * throws ConcurrentModificationException once the deque has been
+     * changed other than through it.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new RingIterator();
+    }
+
+    // an iterator
+    private class RingIterator implements PrimitiveIterator.OfInt {
+        private int counter = 0;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() { return counter < N; }
+        public void remove() { throw new UnsupportedOperationException(); }
+
+        public int nextInt() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            return items[(first + counter++) & (items.length - 1)];
+        }
+    }
+
+    /**
+     * Unit test
+     */
+    public static void main(String[] args) {
+        IntDeque deque = new IntDeque();
+        StdOut.println("isEmpty?: " + deque.isEmpty() + " should be true");
+
+        StdOut.println("\nTest wrap around:");
+        for (int i = 0; i < 5; i++) { deque.addFirst(i); }
+        for (int i = 5; i < 10; i++) { deque.addLast(i); }
+        StdOut.println("size: " + deque.size() + " should be size 10");
+        StdOut.println("Below should be 4 3 2 1 0 5 6 7 8 9:");
+        for (PrimitiveIterator.OfInt it = deque.iterator(); it.hasNext(); ) {
+            StdOut.print(it.nextInt() + " ");
+        }
+        StdOut.println("");
+
+        StdOut.println("\nTest order:(asc)");
+        StdOut.println("Below should be 9 to 5:");
+        for (int i = 0; i < 5; i++) { StdOut.print(deque.removeLast() + " "); }
+        StdOut.println("");
+        StdOut.println("Below should be 4 to 0:");
+        for (int i = 0; i < 5; i++) { StdOut.print(deque.removeFirst() + " "); }
+        StdOut.println("");
+        StdOut.println("isEmpty?: " + deque.isEmpty() + " should be true");
+
+        StdOut.println("\nTest grow and shrink:");
+        for (int i = 0; i < 1000; i++) { deque.addLast(i); }
+        int sum = 0;
+        while (!deque.isEmpty()) { sum += deque.removeFirst(); }
+        StdOut.println("sum: " + sum + " should be 499500");
+
+        StdOut.println("\nTest fail-fast iterator:");
+        for (int i = 0; i < 3; i++) { deque.addLast(i); }
+        try {
+            for (PrimitiveIterator.OfInt it = deque.iterator(); it.hasNext(); ) {
+                deque.addLast(it.nextInt());
+            }
+            StdOut.println("no exception, should have thrown");
+        }
+        catch (ConcurrentModificationException e) {
+            StdOut.println("ConcurrentModificationException thrown as expected");
+        }
+    }
+}
@@ -3,6 +3,11 @@
  *
  * Randomized queue
  *
+ * Items can be given weights, and are then dequeued and sampled with
+ * probability proportional to their weight. The weights are summed in a
+ * Fenwick tree over the item array, created with the first weighted item,
+ * so weighted picks take O(log N). The iterator ignores the weights.
+ *
  */
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -12,6 +17,9 @@ import java.util.NoSuchElementException;
 public class RandomizedQueue<Item> implements Iterable<Item> {
     private int N;                          // size of the queue
     private Item[] queue;                   // array of items
+    private double[] weights;               // weight of each item, null while all weigh 1
+    private double[] tree;                  // Fenwick tree of the weights, tree[i] sums items i - (i & -i) to i - 1
+    private int updates;                    // tree updates since it was last built
 
     /**
      * Constructs an empty randomized queue
@@ -40,6 +48,46 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         Item[] temp = (Item[]) new Object[capacity];
         for (int i = 0; i < N; i++) { temp[i] = queue[i]; }
         queue = temp;
+        if (weights != null) {
+            double[] w = new double[capacity];
+            for (int i = 0; i < N; i++) { w[i] = weights[i]; }
+            weights = w;
+            buildTree();
+        }
+    }
+
+    // build the Fenwick tree from the weights in linear time; rebuilt
+    // after as many updates as slots, so rounding errors do not pile up
+    private void buildTree() {
+        tree = new double[weights.length + 1];
+        for (int i = 0; i < N; i++) { tree[i + 1] = weights[i]; }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+        updates = 0;
+    }
+
+    // add delta to the weight of the item at index i
+    private void addWeight(int i, double delta) {
+        weights[i] += delta;
+        for (int j = i + 1; j < tree.length; j += j & -j) tree[j] += delta;
+        if (++updates > weights.length) buildTree();
+    }
+
+    // index of a random item, picked with probability proportional to its weight
+    private int randomIndex() {
+        if (weights == null) return StdRandom.uniform(N);
+        int capacity = tree.length - 1;                 // a power of two
+        double r = StdRandom.uniform() * tree[capacity];
+        int i = 0;
+        for (int step = capacity; step > 0; step >>= 1) {
+            if (i + step <= capacity && tree[i + step] <= r) {
+                i += step;
+                r -= tree[i];
+            }
+        }
+        return Math.min(i, N - 1);                      // rounding may overshoot the last item
     }
 
     /**
@@ -47,17 +95,45 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      */
     public void enqueue(Item item) {
         if (item == null) throw new NullPointerException();
+        if (weights != null) {
+            enqueue(item, 1.0);
+            return;
+        }
         if (N == queue.length) resize(2 * N);
         queue[N++] = item;
     }
 
     /**
-     * Deletes and returns a random item
+     * Adds the item with the given weight; the items enqueued without a
+     * weight weigh 1
+     */
+    public void enqueue(Item item, double weight) {
+        if (item == null) throw new NullPointerException();
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight should be positive and finite");
+        }
+        if (weights == null) {
+            weights = new double[queue.length];
+            for (int i = 0; i < N; i++) weights[i] = 1.0;
+            buildTree();
+        }
+        if (N == queue.length) resize(2 * N);
+        queue[N++] = item;
+        addWeight(N - 1, weight);
+    }
+
+    /**
+     * Deletes and returns a random item, picked by weight
      */
     public Item dequeue() {
         if (isEmpty()) throw new NoSuchElementException();
-        int randIndex = StdRandom.uniform(N);
+        int randIndex = randomIndex();
         Item item = queue[randIndex];
+        if (weights != null) {          // the last item moves into the slot
+            double last = weights[N - 1];
+            addWeight(N - 1, -last);
+            if (randIndex != N - 1) addWeight(randIndex, last - weights[randIndex]);
+        }
         queue[randIndex] = queue[N - 1];                 
         queue[N-1] = null;              // avoid loitering
         N--;
@@ -66,11 +142,11 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     }
 
     /**
-     * Returns (but does not delete) a random item
+     * Returns (but does not delete) a random item, picked by weight
      */
     public Item sample() {
         if (isEmpty()) throw new NoSuchElementException();
-        return queue[StdRandom.uniform(N)];
+        return queue[randomIndex()];
     }
 
     /**
@@ -80,29 +156,102 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return new QueueIterator();
     }
 
-    // an iterator
+    // an iterator drawing a lazy Fisher-Yates shuffle of the indices: only
+    // the positions swapped so far are stored, in an open-addressing table
+    // of ints, so it starts in O(1) and reading k items costs O(k) time and
+    // space. Once the table would outgrow a sixteenth of the items, the
+    // rest of the shuffle is done in one pass over an array of all their
+    // indices, which is cheaper per item than the table.
     private class QueueIterator implements Iterator<Item> {
-        private int i;
-        private int[] indexArray;
-
-        private void shuffle() {
-            for (int i = 0; i < N; i++) {
-                int randIndex = i + StdRandom.uniform(N - i);
-                int swap = indexArray[randIndex];
-                indexArray[randIndex] = indexArray[i];
-                indexArray[i] = swap;
+        private int i;                              // number of items returned
+        private int n = N;                          // number of items to return
+        private int[] keys = new int[16];           // swapped positions plus 1, 0 for an empty slot
+        private int[] values = new int[16];         // index at each swapped position
+        private int size;                           // number of swapped positions in the table
+        private int[] shuffled;                     // index at each position, once the table is dropped
+
+        // first slot probed for position j
+        private int home(int j) {
+            int h = j * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (keys.length - 1);
+        }
+
+        // slot of position j in the table, or the empty slot where it would go
+        private int slot(int j) {
+            int mask = keys.length - 1;
+            int s = home(j);
+            while (keys[s] != 0 && keys[s] != j + 1) s = (s + 1) & mask;
+            return s;
+        }
+
+        // index at position j of the shuffled index array
+        private int indexAt(int j) {
+            int s = slot(j);
+            return keys[s] == 0 ? j : values[s];
+        }
+
+        // sets the index at position j
+        private void put(int j, int index) {
+            int s = slot(j);
+            if (keys[s] == 0) {
+                if (2 * (size + 1) > keys.length) {
+                    resize(2 * keys.length);
+                    s = slot(j);
+                }
+                keys[s] = j + 1;
+                size++;
             }
+            values[s] = index;
         }
 
-        public QueueIterator() {
-            indexArray = new int[N];
-            for (int j = 0; j < N; j++) indexArray[j] = j;
-            shuffle();
-            i = N;
+        // forgets position j, shifting back the entries probed past it
+        private void forget(int j) {
+            int mask = keys.length - 1;
+            int s = slot(j);
+            if (keys[s] == 0) return;
+            size--;
+            for (int t = (s + 1) & mask; keys[t] != 0; t = (t + 1) & mask) {
+                if (((t - home(keys[t] - 1)) & mask) >= ((t - s) & mask)) {
+                    keys[s] = keys[t];
+                    values[s] = values[t];
+                    s = t;
+                }
+            }
+            keys[s] = 0;
+        }
+
+        // rehashes the table into the given number of slots
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[capacity];
+            values = new int[capacity];
+            size = 0;
+            for (int s = 0; s < oldKeys.length; s++) {
+                if (oldKeys[s] != 0) put(oldKeys[s] - 1, oldValues[s]);
+            }
+        }
+
+        // drops the table for the full index array, and shuffles the
+        // positions not returned yet
+        private void shuffleRest() {
+            shuffled = new int[n];
+            for (int j = i; j < n; j++) shuffled[j] = j;
+            for (int s = 0; s < keys.length; s++) {
+                if (keys[s] != 0) shuffled[keys[s] - 1] = values[s];
+            }
+            keys = null;
+            values = null;
+            for (int j = i; j < n; j++) {
+                int randIndex = j + StdRandom.uniform(n - j);
+                int swap = shuffled[randIndex];
+                shuffled[randIndex] = shuffled[j];
+                shuffled[j] = swap;
+            }
         }
 
         public boolean hasNext() {
-            return i > 0;
+            return i < n;
         }
 
         public void remove() {
@@ -111,7 +260,13 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 
         public Item next() {
             if (!hasNext()) throw new NoSuchElementException();
-            return queue[indexArray[--i]];
+            if (shuffled == null && 2 * (size + 1) > keys.length && 16 * keys.length >= n) shuffleRest();
+            if (shuffled != null) return queue[shuffled[i++]];
+            int randIndex = i + StdRandom.uniform(n - i);
+            int index = indexAt(randIndex);
+            if (randIndex != i) put(randIndex, indexAt(i));
+            forget(i++);                            // position i is never read again
+            return queue[index];
         }
     }
 
@@ -143,5 +298,16 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         StdOut.println("size: " + rq.size() + " should be 8");
         StdOut.println("\nSample an item: " + rq.sample());
         StdOut.println("size: " + rq.size() + " should be 8");
+
+        StdOut.println("\nTest weights: first dequeue of 0 (weight 1), 1 (2), 2 (3), 3 (4) in 100000 runs");
+        int[] first = new int[4];
+        RandomizedQueue<Integer> wq = new RandomizedQueue<Integer>();
+        for (int t = 0; t < 100000; t++) {
+            for (int i = 0; i < 4; i++) wq.enqueue(i, i + 1);
+            first[wq.dequeue()]++;
+            while (!wq.isEmpty()) wq.dequeue();
+        }
+        StdOut.println(first[0] + " " + first[1] + " " + first[2] + " " + first[3]
+                       + " should be close to 10000 20000 30000 40000");
     }
 }
@@ -1,16 +1,45 @@
 /**
  * Created by lu on 3/12/14.
  * Client class using RandomizedQueue
+ *
+ * Reads the input once and keeps a uniform sample of k tokens in a
+ * reservoir of size k (Algorithm L), so memory is O(k) however long the
+ * input is. Instead of a random draw per token, it jumps a geometric
+ * number of tokens to the next one that enters the reservoir. Tokens are
+ * read with a FastTokenReader, and only those kept become Strings.
  */
 public class Subset {
+
+    // next value of the reservoir weight w, the largest of k uniform draws scaled by w
+    private static double nextWeight(double w, int k) {
+        return w * Math.exp(Math.log(1.0 - StdRandom.uniform()) / k);
+    }
+
+    // number of tokens to pass over before the next one enters the reservoir
+    private static long skip(double w) {
+        double skip = Math.floor(Math.log(1.0 - StdRandom.uniform()) / Math.log1p(-w));
+        return skip < Long.MAX_VALUE / 2 ? (long) skip : Long.MAX_VALUE / 2;
+    }
+
     public static void main(String[] args) {
         int k =Integer.parseInt(args[0]);
         RandomizedQueue<String> rq = new RandomizedQueue<String>();
-        while (!StdIn.isEmpty()) {
-            String s = StdIn.readString();
-            rq.enqueue(s);
+        double w = k > 0 ? nextWeight(1.0, k) : 0.0;
+        long next = k > 0 ? k + skip(w) : Long.MAX_VALUE;  // index of the next token to keep
+        long n = 0;                                         // number of tokens read
+        FastTokenReader in = FastTokenReader.stdin();
+        while (in.hasNext()) {
+            CharSequence token = in.next();
+            if (n < k) rq.enqueue(token.toString());
+            else if (n == next) {
+                rq.dequeue();                   // replaces a random token of the reservoir
+                rq.enqueue(token.toString());
+                w = nextWeight(w, k);
+                next += skip(w) + 1;
+            }
+            n++;
         }
-        for (int i = 0; i < k; i++) {
+        while (!rq.isEmpty()) {
             StdOut.println(rq.dequeue());
         }
     }
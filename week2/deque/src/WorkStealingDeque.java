@@ -0,0 +1,176 @@
+/**
+ * Lock-free work-stealing deque (Chase-Lev). One owner thread adds and
+ * removes items at the front; any number of other threads steal items
+ * from the end. The owner only synchronizes with thieves when they race
+ * for the last item.
+ *
+ * Unlike Deque, the removals return null instead of throwing when the
+ * deque is empty, since emptiness can change at any time under stealing.
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+public class WorkStealingDeque<Item> {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final AtomicLong top = new AtomicLong();  // index of the last item, stolen from here
+    private volatile long bottom;                     // index after the first item, owner only
+    private volatile Buffer<Item> buffer;             // circular array of items
+
+    // circular array with power-of-two capacity indexed by ever-growing positions
+    private static class Buffer<Item> {
+        private final AtomicReferenceArray<Item> items;
+        private final int mask;
+
+        Buffer(int capacity) {
+            items = new AtomicReferenceArray<Item>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() { return mask + 1; }
+        Item get(long i) { return items.get((int) i & mask); }
+        void set(long i, Item item) { items.set((int) i & mask, item); }
+
+        // empties the slot of position i, unless it no longer holds the item
+        void clear(long i, Item item) { items.compareAndSet((int) i & mask, item, null); }
+
+        // a buffer twice as large holding the items between positions t and b
+        Buffer<Item> grow(long t, long b) {
+            Buffer<Item> bigger = new Buffer<Item>(2 * capacity());
+            for (long i = t; i < b; i++) bigger.set(i, get(i));
+            return bigger;
+        }
+    }
+
+    /**
+     * Initializes an empty deque.
+     */
+    public WorkStealingDeque() {
+        buffer = new Buffer<Item>(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Is the deque empty? Only a snapshot while other threads steal.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the size of the deque. Only a snapshot while other threads steal.
+     */
+    public int size() {
+        long n = bottom - top.get();
+        return n > 0 ? (int) n : 0;
+    }
+
+    /**
+     * Inserts the item at the front. Owner thread only.
+     */
+    public void addFirst(Item item) {
+        if (item == null) { throw new NullPointerException(); }
+        long b = bottom;
+        long t = top.get();
+        Buffer<Item> a = buffer;
+        if (b - t >= a.capacity() - 1) {
+            a = a.grow(t, b);
+            buffer = a;
+        }
+        a.set(b, item);
+        bottom = b + 1;                 // publishes the item to thieves
+    }
+
+    /**
+     * Deletes and returns the item at the front, or null if the deque is
+     * empty. Owner thread only.
+     */
+    public Item removeFirst() {
+        long b = bottom - 1;
+        Buffer<Item> a = buffer;
+        bottom = b;                     // claim the item before looking at thieves
+        long t = top.get();
+        if (t > b) {                    // was empty
+            bottom = b + 1;
+            return null;
+        }
+        Item item = a.get(b);
+        if (t < b) {                    // no thief can reach this item
+            a.set(b, null);             // avoid loitering
+            return item;
+        }
+        if (!top.compareAndSet(t, t + 1)) item = null;   // raced a thief for the last item
+        else                              a.set(b, null);
+        bottom = b + 1;
+        return item;
+    }
+
+    /**
+     * Steals and returns the item at the end, or null if the deque is
+     * empty. Any thread.
+     */
+    public Item removeLast() {
+        while (true) {
+            long t = top.get();
+            long b = bottom;
+            if (t >= b) return null;
+            Buffer<Item> a = buffer;
+            Item item = a.get(t);
+            if (top.compareAndSet(t, t + 1)) {
+                a.clear(t, item);       // avoid loitering, the owner may have reused the slot
+                Buffer<Item> grown = buffer;
+                if (grown != a) grown.clear(t, item);
+                return item;
+            }
+            // lost the race to another thief or the owner, try again
+        }
+    }
+
+    /**
+     * Unit test: one owner and several thieves share 1,000,000 items
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int n = 1000000;
+        final WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        final boolean[] taken = new boolean[n];
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread[] thieves = new Thread[3];
+        for (int k = 0; k < thieves.length; k++) {
+            thieves[k] = new Thread(new Runnable() {
+                public void run() {
+                    while (!done.get() || !deque.isEmpty()) {
+                        Integer item = deque.removeLast();
+                        if (item != null) { taken[item] = true; count.incrementAndGet(); }
+                    }
+                }
+            });
+            thieves[k].start();
+        }
+        for (int i = 0; i < n; i++) {
+            deque.addFirst(i);
+            if (i % 3 == 0) {
+                Integer item = deque.removeFirst();
+                if (item != null) { taken[item] = true; count.incrementAndGet(); }
+            }
+        }
+        done.set(true);
+        for (Thread thief : thieves) thief.join();
+        int missing = 0;
+        for (boolean t : taken) if (!t) missing++;
+        StdOut.println("taken: " + count.get() + " should be " + n);
+        StdOut.println("missing: " + missing + " should be 0");
+
+        WorkStealingDeque<Integer> stolen = new WorkStealingDeque<Integer>();
+        for (int i = 0; i < 100; i++) stolen.addFirst(i);
+        while (stolen.removeLast() != null) { }
+        int loitering = 0;
+        Buffer<Integer> a = stolen.buffer;
+        for (int i = 0; i < a.capacity(); i++) if (a.get(i) != null) loitering++;
+        StdOut.println("slots still holding stolen items: " + loitering + " should be 0");
+    }
+}